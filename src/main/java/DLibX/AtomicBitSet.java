@@ -0,0 +1,106 @@
+package DLibX;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of non-negative integers, such as key codes, that may be changed and read by different threads without locking.
+ * <p>
+ * Numbers below the size are bits in an array of longs, so adding, removing and checking them never allocates.
+ * Larger numbers, such as the extended key codes of keys not on a US keyboard, are kept in a concurrent set instead.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+class AtomicBitSet {
+    private static final int[] EMPTY = new int[0];
+
+    private final AtomicLongArray words;
+    private final int             size;
+    private final Set<Integer>    overflow; // numbers too large for the bits
+
+    AtomicBitSet(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+        this.overflow = ConcurrentHashMap.newKeySet();
+    }
+
+    boolean add(int i) { // true if it was not already in the set
+        if (i < 0) return false;
+        if (i >= this.size) return this.overflow.add(i);
+        final long m = 1L << i;
+        while (true) {
+            final long w = this.words.get(i >>> 6);
+            if ((w & m) != 0) return false;
+            if (this.words.compareAndSet(i >>> 6, w, w | m)) return true;
+        }
+    }
+
+    boolean remove(int i) { // true if it was in the set
+        if (i < 0) return false;
+        if (i >= this.size) return this.overflow.remove(i);
+        final long m = 1L << i;
+        while (true) {
+            final long w = this.words.get(i >>> 6);
+            if ((w & m) == 0) return false;
+            if (this.words.compareAndSet(i >>> 6, w, w & ~m)) return true;
+        }
+    }
+
+    boolean contains(int i) {
+        if (i < 0) return false;
+        if (i >= this.size) return !this.overflow.isEmpty() && this.overflow.contains(i);
+        return (this.words.get(i >>> 6) & (1L << i)) != 0;
+    }
+
+    void clear() {
+        for (int j = 0; j < this.words.length(); j++) this.words.set(j, 0);
+        this.overflow.clear();
+    }
+
+    int copyInto(int[] into) { // fills in ascending order as far as it fits, returns how many there are
+        int n = 0;
+        for (int j = 0; j < this.words.length(); j++) {
+            long w = this.words.get(j);
+            while (w != 0) {
+                if (n < into.length) into[n] = (j << 6) + Long.numberOfTrailingZeros(w);
+                n++;
+                w &= w - 1; // lowest bit done
+            }
+        }
+        if (!this.overflow.isEmpty()) { // all larger than the bits, but kept in no order
+            final int[] o = this.overflow.stream().mapToInt(Integer::intValue).sorted().toArray();
+            for (int i: o) {
+                if (n < into.length) into[n] = i;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    int[] copyWords(long[] into) { // copies the bits, and returns the numbers too large for them
+        for (int j = 0; j < into.length; j++) into[j] = this.words.get(j);
+        return this.overflow.isEmpty()? AtomicBitSet.EMPTY: this.overflow.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    int[] drainWords(long[] into) { // like copyWords, but also empties the set, losing nothing added meanwhile
+        for (int j = 0; j < into.length; j++) into[j] = this.words.getAndSet(j, 0);
+        if (this.overflow.isEmpty()) return AtomicBitSet.EMPTY;
+        final int[] r = this.overflow.stream().mapToInt(Integer::intValue).toArray();
+        for (int i: r) this.overflow.remove(i);
+        return r;
+    }
+
+    int getSize() {
+        return this.size;
+    }
+
+    int[] toArray() {
+        while (true) {
+            final int[] r = new int[this.copyInto(AtomicBitSet.EMPTY)];
+            if (this.copyInto(r) == r.length) return r; // otherwise changed in between, try again
+        }
+    }
+}
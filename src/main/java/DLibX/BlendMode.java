@@ -0,0 +1,137 @@
+package DLibX;
+
+/**
+ * Defines how colours being drawn are combined with the colours already on a DCanvas.
+ * <p>
+ * Java2D only accelerates Porter-Duff composites, and custom Composites fall back to a very slow generic loop.
+ * Blend modes are instead applied by dedicated kernels operating on rasters of premultiplied ARGB pixels.
+ * The kernels do not branch per pixel, so their cost is the same for any image content.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ * @see DCanvas#drawImage(java.awt.Image, double, double, BlendMode)
+ */
+
+public enum BlendMode {
+    /**
+     * NORMAL blending, the source is drawn over the destination.
+     */
+    NORMAL {
+        @Override
+        public void blend(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = normal(src[srcOffset + i], dst[dstOffset + i]);
+        }
+    },
+    /**
+     * ADD blending, the source is added to the destination; used for lights and glows.
+     */
+    ADD {
+        @Override
+        public void blend(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = add(src[srcOffset + i], dst[dstOffset + i]);
+        }
+    },
+    /**
+     * MULTIPLY blending, the destination is multiplied by the source; used for shadows and tinting.
+     */
+    MULTIPLY {
+        @Override
+        public void blend(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = multiply(src[srcOffset + i], dst[dstOffset + i]);
+        }
+    },
+    /**
+     * SCREEN blending, the inverse of the multiplied inverses; brightens without saturating as harshly as ADD.
+     */
+    SCREEN {
+        @Override
+        public void blend(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = screen(src[srcOffset + i], dst[dstOffset + i]);
+        }
+    },
+    /**
+     * OVERLAY blending, MULTIPLY on dark destination colours and SCREEN on light ones; increases contrast.
+     */
+    OVERLAY {
+        @Override
+        public void blend(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = overlay(src[srcOffset + i], dst[dstOffset + i]);
+        }
+    };
+
+    /**
+     * Blends a run of premultiplied ARGB source pixels into a run of premultiplied ARGB destination pixels.
+     *
+     * @param src       the pixels being drawn
+     * @param srcOffset the index of the first source pixel
+     * @param dst       the pixels being drawn on, which receive the result
+     * @param dstOffset the index of the first destination pixel
+     * @param length    the number of pixels to blend
+     */
+
+    public abstract void blend(int[] src, int srcOffset, int[] dst, int dstOffset, int length);
+
+    //////////////////////////////////////////////////////////////////////////// KERNELS
+
+    private static int div255(int x) { // exact x/255 rounded, for 0 <= x <= 255*255
+        x += 128;
+        return (x + (x >> 8)) >> 8;
+    }
+
+    private static int normal(int s, int d) {
+        final int ia = 255 - (s >>> 24);
+        return (((s >>> 24) + div255((d >>> 24)*ia)) << 24)
+            | ((((s >> 16) & 0xFF) + div255(((d >> 16) & 0xFF)*ia)) << 16)
+            | ((((s >> 8) & 0xFF) + div255(((d >> 8) & 0xFF)*ia)) << 8)
+            | ((s & 0xFF) + div255((d & 0xFF)*ia));
+    }
+
+    private static int add(int s, int d) {
+        int rb = (s & 0x00FF00FF) + (d & 0x00FF00FF);
+        int ag = ((s >>> 8) & 0x00FF00FF) + ((d >>> 8) & 0x00FF00FF);
+        rb |= 0x01000100 - ((rb >>> 8) & 0x00010001); // any channel that overflowed becomes 0xFF
+        ag |= 0x01000100 - ((ag >>> 8) & 0x00010001);
+        return (rb & 0x00FF00FF) | ((ag & 0x00FF00FF) << 8);
+    }
+
+    private static int multiply(int s, int d) {
+        final int sa = s >>> 24, da = d >>> 24;
+        final int isa = 255 - sa, ida = 255 - da;
+        return ((sa + da - div255(sa*da)) << 24)
+            | (multiplyChannel((s >> 16) & 0xFF, (d >> 16) & 0xFF, isa, ida) << 16)
+            | (multiplyChannel((s >> 8) & 0xFF, (d >> 8) & 0xFF, isa, ida) << 8)
+            | multiplyChannel(s & 0xFF, d & 0xFF, isa, ida);
+    }
+
+    private static int multiplyChannel(int s, int d, int isa, int ida) {
+        return div255(s*d + s*ida + d*isa);
+    }
+
+    private static int screen(int s, int d) {
+        return (screenChannel(s >>> 24, d >>> 24) << 24)
+            | (screenChannel((s >> 16) & 0xFF, (d >> 16) & 0xFF) << 16)
+            | (screenChannel((s >> 8) & 0xFF, (d >> 8) & 0xFF) << 8)
+            | screenChannel(s & 0xFF, d & 0xFF);
+    }
+
+    private static int screenChannel(int s, int d) {
+        return s + d - div255(s*d);
+    }
+
+    private static int overlay(int s, int d) {
+        final int sa = s >>> 24, da = d >>> 24;
+        final int isa = 255 - sa, ida = 255 - da, sada = sa*da;
+        return ((sa + da - div255(sada)) << 24)
+            | (overlayChannel((s >> 16) & 0xFF, (d >> 16) & 0xFF, sa, da, isa, ida, sada) << 16)
+            | (overlayChannel((s >> 8) & 0xFF, (d >> 8) & 0xFF, sa, da, isa, ida, sada) << 8)
+            | overlayChannel(s & 0xFF, d & 0xFF, sa, da, isa, ida, sada);
+    }
+
+    private static int overlayChannel(int s, int d, int sa, int da, int isa, int ida, int sada) {
+        final int dark = 2*s*d;
+        final int light = sada - 2*(da - d)*(sa - s);
+        final int m = (da - 2*d) >> 31; // -1 where the destination is light
+        final int c = (dark & ~m) | (light & m);
+        return Math.min(255, div255(Math.max(0, c + s*ida + d*isa)));
+    }
+}
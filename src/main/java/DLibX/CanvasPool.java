@@ -0,0 +1,127 @@
+package DLibX;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Keeps offscreen DCanvases for reuse, so temporary canvases do not allocate video memory every frame.
+ * <p>
+ * Canvases are pooled by size.
+ * A canvas taken from the pool has its drawing attributes reset and is cleared to its background colour.
+ * Once it is no longer needed it should be given back with {@link #release(DCanvas)}, and must not be used afterwards.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public class CanvasPool {
+    private final HashMap<Long, ArrayDeque<DCanvas>> idle;
+    private final int                                transparency;
+    private final int                                limit;
+    private int                                      count;
+
+    /**
+     * Makes a pool of translucent canvases, keeping at most 4 idle canvases of each size.
+     */
+
+    public CanvasPool() {
+        this(DCanvas.ALPHA_TRANSLUCENT, 4);
+    }
+
+    /**
+     * Makes a pool of canvases.
+     *
+     * @param transparency the transparency of the canvases in the pool
+     * @param limit        the maximum number of idle canvases kept for each size
+     *
+     * @throws IllegalArgumentException if {@code limit < 1}
+     */
+
+    public CanvasPool(int transparency, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1, you have: " + limit);
+        this.idle = new HashMap<>();
+        this.transparency = transparency;
+        this.limit = limit;
+    }
+
+    /**
+     * Takes a canvas of the specified size from the pool, or makes one if none are idle.
+     *
+     * @param width  the width of the canvas in pixels
+     * @param height the height of the canvas in pixels
+     *
+     * @return a cleared canvas with default drawing attributes
+     */
+
+    public DCanvas acquire(int width, int height) {
+        DCanvas canvas = null;
+        synchronized (this) {
+            ArrayDeque<DCanvas> list = this.idle.get(CanvasPool.key(width, height));
+            if (list != null && !list.isEmpty()) {
+                canvas = list.pop();
+                this.count--;
+            }
+        }
+
+        if (canvas == null) return new DCanvas(width, height, this.transparency);
+
+        canvas.resetAttributes();
+        canvas.clear();
+        return canvas;
+    }
+
+    /**
+     * Gives a canvas back to the pool.
+     * If the pool already holds enough idle canvases of its size, the canvas is disposed of.
+     * If the canvas is null, no exception is thrown and no action is performed.
+     *
+     * @param canvas the canvas to give back
+     *
+     * @throws IllegalArgumentException if the canvas was already given back, has been disposed, or is a view
+     */
+
+    public void release(DCanvas canvas) {
+        if (canvas == null) return;
+        if (canvas.isView()) throw new IllegalArgumentException("Views cannot be pooled, they draw on the image of their canvas");
+        if (canvas.isDisposed()) throw new IllegalArgumentException("Canvas has been disposed, it may have been released already");
+        synchronized (this) {
+            final Long k = CanvasPool.key(canvas.getWidth(), canvas.getHeight());
+            ArrayDeque<DCanvas> list = this.idle.get(k);
+            if (list == null) this.idle.put(k, list = new ArrayDeque<>());
+            for (DCanvas c: list) // otherwise two acquires would get the same canvas
+                if (c == canvas) throw new IllegalArgumentException("Canvas was already released to the pool");
+            if (list.size() < this.limit) {
+                list.push(canvas);
+                this.count++;
+                return;
+            }
+        }
+        canvas.dispose();
+    }
+
+    /**
+     * Disposes of all idle canvases in the pool.
+     */
+
+    public synchronized void clear() {
+        for (ArrayDeque<DCanvas> list: this.idle.values())
+            for (DCanvas canvas: list)
+                canvas.dispose();
+        this.idle.clear();
+        this.count = 0;
+    }
+
+    /**
+     * Returns the number of idle canvases in the pool.
+     *
+     * @return the number of idle canvases
+     */
+
+    public synchronized int getIdleCount() {
+        return this.count;
+    }
+
+    private static Long key(int width, int height) {
+        return ((long)width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,300 @@
+package DLibX;
+
+import DLibX.util.FramePacer;
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Draws several DConsoles from one render thread, or a small pool of them.
+ * <p>
+ * Each console is added with its own frame rate and a {@link Renderer} that draws one frame of it.
+ * The scheduler keeps the consoles in order of when their next frame is due, waits until the earliest one is due, draws it and presents it.
+ * A console is never drawn by two threads at once, so with a pool, different consoles are drawn at the same time but each console's frames stay in order.
+ * The rate policy of each console is followed, so hidden or unfocused consoles draw fewer frames or none at all.
+ * If drawing a console throws an exception, the exception is printed and that console is removed, while the others keep drawing.
+ * <p>
+ * Consoles added to a scheduler draw images by filename through one shared {@link ImageLoader}, so an image used by several windows is loaded into video memory once.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public class ConsoleScheduler {
+    private static final long SPIN_NANOS   = 2_000_000L;   // waits shorter than this are left to the pacer
+    private static final long PAUSED_NANOS = 100_000_000L; // how often a paused console is checked again
+
+    private final PriorityQueue<Window> queue;  // consoles waiting for their next frame, earliest first
+    private final ArrayList<Window>     windows;
+    private final ImageLoader           images; // shared by every console
+    private final int                   threads;
+
+    private Thread[]                    workers;
+    private volatile boolean            running;
+
+    /**
+     * Makes a scheduler that draws from a single thread.
+     */
+
+    public ConsoleScheduler() {
+        this(1);
+    }
+
+    /**
+     * Makes a scheduler that draws from a pool of threads.
+     *
+     * @param threads the number of threads that draw
+     *
+     * @throws IllegalArgumentException if {@code threads < 1}
+     */
+
+    public ConsoleScheduler(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Thread count must be at least 1, you have: " + threads);
+        this.queue = new PriorityQueue<>();
+        this.windows = new ArrayList<>();
+        this.images = new ImageLoader();
+        this.threads = threads;
+    }
+
+    /**
+     * Adds a console to be drawn at a frame rate.
+     * The console draws images by filename through the shared ImageLoader from now on.
+     *
+     * @param console  the console to draw
+     * @param fps      the number of frames per second to draw it at
+     * @param renderer draws one frame of the console, the console is presented after
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}, or the console was already added
+     */
+
+    public void add(DConsole console, double fps, Renderer renderer) {
+        final Window w = new Window(console, renderer);
+        w.setTargetFps(fps);
+        synchronized (this.queue) {
+            if (this.find(console) != null) throw new IllegalArgumentException("Console was already added to the scheduler");
+            this.windows.add(w);
+            w.deadline = System.nanoTime();
+            this.queue.add(w);
+            this.queue.notifyAll();
+        }
+        console.setImageLoader(this.images);
+    }
+
+    /**
+     * Removes a console, which is no longer drawn once its current frame is finished.
+     * The console goes back to its own ImageLoader.
+     * If the console was not added, no action is performed.
+     *
+     * @param console the console to remove
+     */
+
+    public void remove(DConsole console) {
+        synchronized (this.queue) {
+            final Window w = this.find(console);
+            if (w == null) return;
+            this.windows.remove(w);
+            this.queue.remove(w); // not queued while being drawn, which it checks when done
+            this.queue.notifyAll();
+        }
+        console.setImageLoader(null);
+    }
+
+    /**
+     * Sets the frame rate of a console.
+     *
+     * @param console the console
+     * @param fps     the number of frames per second to draw it at
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     * @throws NoSuchElementException   if the console was not added
+     */
+
+    public void setTargetFps(DConsole console, double fps) {
+        synchronized (this.queue) {
+            final Window w = this.find(console);
+            if (w == null) throw new NoSuchElementException("Console was not added to the scheduler");
+            w.setTargetFps(fps);
+        }
+    }
+
+    /**
+     * Returns the ImageLoader shared by every console of this scheduler.
+     *
+     * @return the shared image loader
+     */
+
+    public ImageLoader getImageLoader() {
+        return this.images;
+    }
+
+    /**
+     * Returns the number of consoles being drawn.
+     *
+     * @return the number of consoles
+     */
+
+    public int getConsoles() {
+        synchronized (this.queue) {
+            return this.windows.size();
+        }
+    }
+
+    private Window find(DConsole console) {
+        for (Window w: this.windows) if (w.console == console) return w;
+        return null;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// RUNNING
+
+    /**
+     * Starts drawing on new threads.
+     *
+     * @throws IllegalStateException if the scheduler is already running
+     */
+
+    public synchronized void start() {
+        if (this.running) throw new IllegalStateException("Scheduler is already running");
+        this.running = true;
+        this.workers = new Thread[this.threads];
+        for (int i = 0; i < this.threads; i++) {
+            this.workers[i] = new Thread(this::work, "ConsoleScheduler " + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Stops drawing once the current frames are finished, and waits for the threads to end unless called from one of them.
+     */
+
+    public void stop() {
+        final Thread[] t;
+        synchronized (this) {
+            this.running = false;
+            t = this.workers;
+            this.workers = null;
+        }
+        synchronized (this.queue) {
+            this.queue.notifyAll();
+        }
+        if (t == null) return;
+        for (Thread w: t) {
+            if (w == Thread.currentThread()) continue;
+            try {
+                w.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns if the scheduler is drawing.
+     *
+     * @return true if started and not stopped
+     */
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    private void work() {
+        final FramePacer pacer = new FramePacer(60); // only its sleep calibration is used, one per thread
+        while (this.running) {
+            final Window w = this.next();
+            if (w == null) return;
+
+            pacer.sleepUntil(w.deadline); // the last moment, precisely
+
+            final int policy = w.console.getRatePolicy();
+            long period = w.period;
+            if (policy == DConsole.RATE_PAUSED) period = ConsoleScheduler.PAUSED_NANOS;
+            if (policy == DConsole.RATE_REDUCED) period = Math.max(period, Math.round(1e9/w.console.getReducedRate()));
+
+            if (policy != DConsole.RATE_PAUSED) {
+                try {
+                    w.renderer.render(w.console);
+                    w.console.redraw();
+                } catch (RuntimeException e) { // a broken window must not stop the others, so only it is removed
+                    this.remove(w.console);
+                    System.err.println("ConsoleScheduler: removed a console whose frame failed");
+                    e.printStackTrace();
+                    continue;
+                }
+            }
+
+            final long now = System.nanoTime();
+            w.deadline += period;
+            if (now - w.deadline >= period) w.deadline = now; // far behind, start over instead of catching up
+
+            synchronized (this.queue) {
+                if (this.windows.contains(w)) { // removed while drawing
+                    this.queue.add(w);
+                    this.queue.notifyAll();
+                }
+            }
+        }
+    }
+
+    private Window next() { // takes the console due first, waiting until it is nearly due
+        synchronized (this.queue) {
+            while (this.running) {
+                final Window w = this.queue.peek();
+                try {
+                    if (w == null) {
+                        this.queue.wait();
+                        continue;
+                    }
+                    final long wait = w.deadline - System.nanoTime() - ConsoleScheduler.SPIN_NANOS;
+                    if (wait > 0) { // woken early if a console is added or becomes due sooner
+                        this.queue.wait(wait/1_000_000, (int)(wait%1_000_000));
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                return this.queue.poll();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Draws one frame of a console.
+     */
+
+    public interface Renderer {
+        /**
+         * Draws a frame, which the scheduler then presents with {@link DConsole#redraw()}.
+         *
+         * @param console the console to draw on
+         */
+
+        void render(DConsole console);
+    }
+
+    private static class Window implements Comparable<Window> {
+        final DConsole console;
+        final Renderer renderer;
+        volatile long  period;   // nanoseconds between frames
+        long           deadline; // when the next frame is due, guarded by the queue while queued
+
+        Window(DConsole console, Renderer renderer) {
+            this.console = console;
+            this.renderer = renderer;
+        }
+
+        void setTargetFps(double fps) {
+            if (!(fps > 0)) throw new IllegalArgumentException("Target fps must be positive, you have: " + fps);
+            this.period = Math.round(1e9/fps);
+        }
+
+        @Override
+        public int compareTo(Window that) {
+            return Long.compare(this.deadline, that.deadline);
+        }
+    }
+}
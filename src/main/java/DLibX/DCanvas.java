@@ -18,6 +18,7 @@ import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.VolatileImage;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Arc2D;
@@ -27,6 +28,8 @@ import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RectangularShape;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles drawing to an image.
@@ -85,6 +88,10 @@ public class DCanvas {
      * Defines an ease-of-use set of HIGH QUALITY rendering hints.
      */
     public static final RenderingHints RENDER_HIGH_QUALITY;
+    /**
+     * Defines an ease-of-use set of MEDIUM QUALITY rendering hints; antialiased, without the costliest settings.
+     */
+    public static final RenderingHints RENDER_MEDIUM_QUALITY;
     /**
      * Defines an ease-of-use set of LOW QUALITY rendering hints.
      */
@@ -115,6 +122,8 @@ public class DCanvas {
     public static final int ALPHA_TRANSLUCENT;
 
     static {
+        Pipeline.bootstrap(); // before anything can set up graphics
+
         RENDER_HIGH_QUALITY = new RenderingHints(null, null);
         RENDER_HIGH_QUALITY.put(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
         RENDER_HIGH_QUALITY.put(RenderingHints.KEY_ANTIALIASING,        RenderingHints.VALUE_ANTIALIAS_ON);
@@ -126,6 +135,17 @@ public class DCanvas {
         RENDER_HIGH_QUALITY.put(RenderingHints.KEY_STROKE_CONTROL,      RenderingHints.VALUE_STROKE_PURE);
         RENDER_HIGH_QUALITY.put(RenderingHints.KEY_TEXT_ANTIALIASING,   RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
+        RENDER_MEDIUM_QUALITY = new RenderingHints(null, null);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_DEFAULT);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_ANTIALIASING,        RenderingHints.VALUE_ANTIALIAS_ON);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_COLOR_RENDERING,     RenderingHints.VALUE_COLOR_RENDER_DEFAULT);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_DITHERING,           RenderingHints.VALUE_DITHER_DISABLE);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_FRACTIONALMETRICS,   RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_INTERPOLATION,       RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_RENDERING,           RenderingHints.VALUE_RENDER_DEFAULT);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_STROKE_CONTROL,      RenderingHints.VALUE_STROKE_NORMALIZE);
+        RENDER_MEDIUM_QUALITY.put(RenderingHints.KEY_TEXT_ANTIALIASING,   RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
         RENDER_LOW_QUALITY = new RenderingHints(null, null);
         RENDER_LOW_QUALITY.put(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
         RENDER_LOW_QUALITY.put(RenderingHints.KEY_ANTIALIASING,        RenderingHints.VALUE_ANTIALIAS_OFF);
@@ -163,6 +183,22 @@ public class DCanvas {
 
     private int                   transparency;  // defines type of transparency stored image has
 
+    private static final int      CAPACITY_STEP = 256; // images grow in steps, so resizing rarely reallocates
+
+    private final DCanvas         parent;        // canvas whose image is shared by this view, null if not a view
+    private final ArrayList<DCanvas> views;      // views sharing this canvas's image
+    private int                   left;          // position of the canvas within the image
+    private int                   top;
+    private int                   width;         // size of the canvas, which may be smaller than the image
+    private int                   height;
+    private int                   ux;            // region of a view, in the drawing units of its root
+    private int                   uy;
+    private int                   uw;
+    private int                   uh;
+    private final AffineTransform base;          // maps canvas space to image space
+    private final AffineTransform deviceTrans;   // scratch for base combined with the drawing transform
+    private final AtomicLong      software;      // times the image was used while not accelerated, shared with views
+
     private Rectangle2D           bounds;
     private FontMetrics           metrics;
     private Line2D                line;
@@ -171,9 +207,24 @@ public class DCanvas {
     private Arc2D                 arc;
     private Path2D                path;
 
+    private Blender               blender;       // scratch rasters for blend modes, made on first use
+
     public DCanvas(int width, int height, int transparency) {
-        this.config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        this(null, GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration(), transparency);
+
+        this.resize(width, height);
+
+        this.metrics = this.graphics.getFontMetrics(this.font);
+
+        this.clearRect(0, 0, width, height);
+
+        SurfaceMetrics.register(this);
+    }
+
+    private DCanvas(DCanvas parent, GraphicsConfiguration config, int transparency) {
+        this.config = config;
         this.transparency = transparency;
+        this.parent = parent;
 
         this.align          = DCanvas.ALIGN_LEFT;
         this.background     = (this.transparency == DCanvas.ALPHA_OPAQUE)? Color.WHITE: new Color(0,0,0,0);
@@ -193,12 +244,65 @@ public class DCanvas {
         this.ellipse        = new Ellipse2D.Double();
         this.arc            = new Arc2D.Double();
         this.path           = new Path2D.Double();
+        this.views          = new ArrayList<>();
+        this.base           = new AffineTransform();
+        this.deviceTrans    = new AffineTransform();
+        this.software       = (parent != null)? parent.software: new AtomicLong();
+    }
 
-        this.resize(width, height);
+    /**
+     * Creates a view of a rectangular region of this DCanvas.
+     * <p>
+     * A view draws directly on the image of this DCanvas, so no image is allocated and nothing is copied.
+     * It has its own drawing attributes, its coordinates start at the top left of the region, and drawing is clipped to the region.
+     * The region must lie within this DCanvas, which may itself be a view.
+     * The region is in the same units as this DCanvas, so a view is scaled along with it, such as by a render scale.
+     * Views of disjoint regions may be drawn on by different threads at the same time.
+     * Calling {@link #setSize(int, int)} on a view changes the size of its region.
+     *
+     * @param x      the X position of the region within this canvas
+     * @param y      the Y position of the region within this canvas
+     * @param width  the width of the region
+     * @param height the height of the region
+     *
+     * @return a view of the region
+     *
+     * @throws IllegalArgumentException if {@code width < 1} or {@code height < 1}, or the region is not within this DCanvas
+     */
+
+    public DCanvas createView(int x, int y, int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("View dimensions must be at least 1, you have: " + width + "x" + height);
+        final int w = this.getWidth();
+        final int h = this.getHeight();
+        if (x < 0 || y < 0 || x > w - width || y > h - height) // a view of a view must stay within it, as it is only clipped to the image
+            throw new IllegalArgumentException("View must be within the " + w + "x" + h + " canvas, you have: " + width + "x" + height + " at " + x + ", " + y);
+
+        final DCanvas root = (this.parent == null)? this: this.parent; // views of views share the same image
+        final DCanvas view = new DCanvas(root, this.config, this.transparency);
+        view.ux = ((this.parent == null)? 0: this.ux) + x;
+        view.uy = ((this.parent == null)? 0: this.uy) + y;
+
+        synchronized (root) {
+            if (root.image == null) throw new IllegalStateException("Canvas has been disposed");
+            root.views.add(view);
+            view.resize(width, height);
+        }
 
-        this.metrics = this.graphics.getFontMetrics(this.font);
+        view.metrics = view.graphics.getFontMetrics(view.font);
+        return view;
+    }
 
-        this.clearRect(0, 0, width, height);
+    /**
+     * Checks if the DCanvas is a view of another DCanvas.
+     *
+     * @return if the canvas draws on the image of another canvas
+     *
+     * @see #createView(int, int, int, int)
+     */
+
+    public boolean isView() {
+        return this.parent != null;
     }
 
     private void makePath(double[] x, double[] y) {
@@ -312,9 +416,19 @@ public class DCanvas {
             postTransform.setToTranslation(x, y);
             postTransform.preConcatenate(transform);
             postTransform.preConcatenate(AffineTransform.getTranslateInstance(bounds.getX(), p)); // this is the line I am most concerened with
-            graphics.setTransform(postTransform); // graphics object to draw on surface
+            setGraphicsTransform(postTransform); // graphics object to draw on surface
         } else {
-            graphics.setTransform(transform); // graphics object to draw on surface
+            setGraphicsTransform(transform); // graphics object to draw on surface
+        }
+    }
+
+    private void setGraphicsTransform(AffineTransform t) {
+        if (this.base.isIdentity()) {
+            this.graphics.setTransform(t);
+        } else {
+            this.deviceTrans.setTransform(this.base);
+            this.deviceTrans.concatenate(t);
+            this.graphics.setTransform(this.deviceTrans);
         }
     }
 
@@ -340,7 +454,7 @@ public class DCanvas {
      */
 
     public synchronized void clearRect(int x, int y, int width, int height) {
-        this.graphics.setTransform(this.clearTrans); //centres transform
+        this.setGraphicsTransform(this.clearTrans); //centres transform
 
         if (this.transparency != ALPHA_OPAQUE && this.background.getAlpha() != 255) { //if transparency is supported completely clear
             this.graphics.setComposite(AlphaComposite.Clear);
@@ -597,6 +711,116 @@ public class DCanvas {
         this.graphics.drawImage(img, (int)x, (int)y, null);
     }
 
+    /**
+     * Draws an image using the specified blend mode and the settings of the current DCanvas object.
+     * The rendering attributes applied include the translation of the Transform, and the opacity of an AlphaComposite.
+     * Rotation and scaling are not applied; the image is blended axis-aligned at the transformed position.
+     * <p>
+     * The covered part of the canvas is read back, blended, and written back once per call.
+     * To blend many small images, such as particles, draw them on a transparent DCanvas and blend that once.
+     * If the blend mode is null or NORMAL, the image is drawn as by {@link #drawImage(Image, double, double)}.
+     *
+     * @param img  the image to draw
+     * @param x    the X position of the Image, anchored by the specified origin
+     * @param y    the Y position of the Image, anchored by the specified origin
+     * @param mode how the image is combined with what is already drawn
+     */
+
+    public void drawImage(Image img, double x, double y, BlendMode mode) {
+        if (mode == null || mode == BlendMode.NORMAL) {
+            this.drawImage(img, x, y);
+        } else {
+            this.blendImage(img, 0, 0, img.getWidth(null), img.getHeight(null), x, y, mode);
+        }
+    }
+
+    /**
+     * Draws what has been drawn on another DCanvas using the settings of the current DCanvas object.
+     * The rendering attributes applied include the Clip, Transform and Composite attributes.
+     * <p>
+     * The image of the other canvas is drawn directly, so no copy of it is made in system memory as by {@link #getSnapshot()}.
+     *
+     * @param src the canvas to draw
+     * @param x   the X position of the canvas, anchored by the specified origin
+     * @param y   the Y position of the canvas, anchored by the specified origin
+     */
+
+    public void drawCanvas(DCanvas src, double x, double y) {
+        this.drawCanvas(src, x, y, -1, -1, null);
+    }
+
+    /**
+     * Draws what has been drawn on another DCanvas, scaled to the specified size, using the settings of the current DCanvas object.
+     * The rendering attributes applied include the Clip, Transform, Composite and interpolation attributes.
+     * <p>
+     * The image of the other canvas is drawn directly, so no copy of it is made in system memory as by {@link #getSnapshot()}.
+     *
+     * @param src    the canvas to draw
+     * @param x      the X position of the canvas, anchored by the specified origin
+     * @param y      the Y position of the canvas, anchored by the specified origin
+     * @param width  the width to draw the canvas at
+     * @param height the height to draw the canvas at
+     */
+
+    public void drawCanvas(DCanvas src, double x, double y, double width, double height) {
+        this.drawCanvas(src, x, y, width, height, null);
+    }
+
+    /**
+     * Draws what has been drawn on another DCanvas using the specified blend mode and the settings of the current DCanvas object.
+     * The rendering attributes applied are the same as for {@link #drawImage(Image, double, double, BlendMode)}.
+     *
+     * @param src  the canvas to draw
+     * @param x    the X position of the canvas, anchored by the specified origin
+     * @param y    the Y position of the canvas, anchored by the specified origin
+     * @param mode how the canvas is combined with what is already drawn
+     */
+
+    public void drawCanvas(DCanvas src, double x, double y, BlendMode mode) {
+        this.drawCanvas(src, x, y, -1, -1, mode);
+    }
+
+    private void drawCanvas(DCanvas src, double x, double y, double width, double height, BlendMode mode) {
+        final VolatileImage img;
+        final int sx, sy, sw, sh;
+        synchronized (src) { // never hold both locks at once
+            img = src.image;
+            sx = src.left;
+            sy = src.top;
+            sw = src.width; // pixels in the image, which may be drawn scaled
+            sh = src.height;
+            if (width < 0) width = src.getWidth();
+            if (height < 0) height = src.getHeight();
+        }
+        if (!DCanvas.isAccelerated(img, src.config)) src.software.incrementAndGet();
+
+        if (mode == null || mode == BlendMode.NORMAL) {
+            this.drawRegion(img, sx, sy, sw, sh, x, y, width, height);
+        } else {
+            this.blendImage(img, sx, sy, sw, sh, x, y, mode);
+        }
+    }
+
+    private synchronized void drawRegion(Image img, int sx, int sy, int sw, int sh, double x, double y, double width, double height) {
+        this.applyOrigin((int)x, (int)y, (int)width, (int)height);
+        this.graphics.drawImage(img, (int)x, (int)y, (int)x + (int)width, (int)y + (int)height, sx, sy, sx + sw, sy + sh, null);
+    }
+
+    private synchronized void blendImage(Image img, int sx, int sy, int sw, int sh, double x, double y, BlendMode mode) {
+        this.applyOrigin((int)x, (int)y, sw, sh);
+        final AffineTransform t = this.graphics.getTransform(); // includes the position of the canvas within the image
+        final int dx = (int)Math.round(t.getScaleX()*(int)x + t.getShearX()*(int)y + t.getTranslateX());
+        final int dy = (int)Math.round(t.getShearY()*(int)x + t.getScaleY()*(int)y + t.getTranslateY());
+        final int dw = (int)Math.round(sw*this.base.getScaleX()); // size in image space, smaller at a render scale below 1
+        final int dh = (int)Math.round(sh*this.base.getScaleY());
+        final float alpha = (this.composite instanceof AlphaComposite)? ((AlphaComposite)this.composite).getAlpha(): 1f;
+
+        if (this.blender == null) this.blender = new Blender();
+        this.graphics.setTransform(this.clearTrans); // image space
+        this.blender.blend(this.image, this.graphics, img, sx, sy, sw, sh, dx, dy, dw, dh, this.left, this.top, this.width, this.height, mode, alpha);
+        this.graphics.setComposite(this.composite);
+    }
+
     /**
      * Draws a point using the settings of the current DCanvas object.
      * The rendering attributes applied include the Transform, Paint, Composite, and Stroke attributes.
@@ -906,6 +1130,34 @@ public class DCanvas {
         this.correct = inUse;
     }
 
+    /**
+     * Resets all drawing attributes of the DCanvas to their defaults, as they were when the DCanvas was created.
+     * What has been drawn on the canvas is not affected.
+     */
+
+    public synchronized void resetAttributes() {
+        this.align      = DCanvas.ALIGN_LEFT;
+        this.background = (this.transparency == DCanvas.ALPHA_OPAQUE)? Color.WHITE: new Color(0,0,0,0);
+        this.composite  = AlphaComposite.SrcOver;
+        this.font       = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+        this.hints      = DCanvas.RENDER_LOW_QUALITY;
+        this.origin     = DCanvas.ORIGIN_TOP_LEFT;
+        this.paint      = Color.BLACK;
+        this.stroke     = new BasicStroke(1);
+        this.transform  = this.clearTrans;
+        this.plane      = DCanvas.PLANE_DEFAULT;
+        this.correct    = false;
+
+        this.setGraphicsTransform(this.clearTrans);
+        this.graphics.setBackground(this.background);
+        this.graphics.setPaint(this.paint);
+        this.graphics.setStroke(this.stroke);
+        this.graphics.setRenderingHints(this.hints);
+        this.graphics.setFont(this.font);
+        this.graphics.setComposite(this.composite);
+        this.metrics = this.graphics.getFontMetrics(this.font);
+    }
+
     //////////////////////////////////////////////////////////////////////////// DRAWING ATTRIBUTE GETTERS
 
     /**
@@ -1005,7 +1257,7 @@ public class DCanvas {
      */
 
     public synchronized int getWidth() {
-        return this.image.getWidth();
+        return (this.parent != null)? this.uw: this.width;
     }
 
     /**
@@ -1015,7 +1267,7 @@ public class DCanvas {
      */
 
     public synchronized int getHeight() {
-        return this.image.getHeight();
+        return (this.parent != null)? this.uh: this.height;
     }
 
     /**
@@ -1039,7 +1291,9 @@ public class DCanvas {
 
     /**
      * Sets the DCanvas's dimensions.
-     * The underlying VolatileImage and Graphics context will be re-created.
+     * The underlying VolatileImage and Graphics context will be re-created if the image is too small or far too large.
+     * Images grow in steps, so most resizes only change the part of the image that is used.
+     * If the DCanvas is a view, only the size of its region is changed.
      *
      * @param width  the width to set the canvas to in pixels
      * @param height the height to set the canvas to in pixels
@@ -1050,7 +1304,24 @@ public class DCanvas {
     }
 
     protected synchronized void resize(int width, int height) {
-        VolatileImage tmpImage = this.config.createCompatibleVolatileImage(width, height, transparency);
+        if (this.parent != null) { // views just move their clip
+            this.uw = width;
+            this.uh = height;
+            this.place();
+            this.attach(this.parent.image);
+            return;
+        }
+
+        if (this.image != null && !DCanvas.needsCapacity(this.image, width, height)) { // fits, so no reallocation
+            this.clearExposed(this.image, width, height);
+            this.width = width;
+            this.height = height;
+            return;
+        }
+
+        final boolean first = this.image == null; // first image is exact, later ones grow in steps
+        VolatileImage tmpImage = this.config.createCompatibleVolatileImage(
+            first? width: DCanvas.capacity(width), first? height: DCanvas.capacity(height), transparency);
 
         Graphics2D g = null;
         try {
@@ -1060,20 +1331,172 @@ public class DCanvas {
             g.fillRect(0, 0, tmpImage.getWidth(), tmpImage.getHeight());
             g.setComposite(AlphaComposite.SrcOver);
             if (this.image != null) {
-                g.drawImage(this.image, 0, 0, null);
+                g.drawImage(this.image, 0, 0, this.width, this.height, 0, 0, this.width, this.height, null);
                 this.image.flush();
             }
         } finally {
             g.dispose();
         }
 
-        this.image = tmpImage;
+        this.width = width;
+        this.height = height;
+
+        this.attach(tmpImage);
+        for (DCanvas view: this.views) view.attach(tmpImage);
+    }
+
+    static int capacity(int size) { // rounds up to a whole step, so small resizes fit
+        return (Math.max(1, size) + CAPACITY_STEP - 1)/CAPACITY_STEP*CAPACITY_STEP;
+    }
+
+    static boolean needsCapacity(VolatileImage image, int width, int height) { // too small, or far too big
+        return width > image.getWidth() || height > image.getHeight()
+            || DCanvas.capacity(width)*2 < image.getWidth() || DCanvas.capacity(height)*2 < image.getHeight();
+    }
+
+    private void clearExposed(VolatileImage image, int width, int height) { // region that grows within capacity may hold old pixels
+        if (width <= this.width && height <= this.height) return;
+        Graphics2D g = null;
+        try {
+            g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.setColor(Color.BLACK);
+            if (width > this.width) g.fillRect(this.width, 0, width - this.width, Math.max(height, this.height));
+            if (height > this.height) g.fillRect(0, this.height, width, height - this.height);
+        } finally {
+            if (g != null) g.dispose();
+        }
+    }
+
+    /**
+     * Checks that the image the DCanvas draws on still holds its contents.
+     * Accelerated images can lose them when the display mode changes, when switching to or from fullscreen, or when the graphics driver resets.
+     * If so, the image is remade if needed and cleared, and everything must be drawn again.
+     * Views check the image of their canvas.
+     *
+     * @return true if the contents were lost
+     *
+     * @see SurfaceMetrics
+     */
+
+    public boolean validate() {
+        return (this.parent != null)? this.parent.validateImage(): this.validateImage(); // views lock only their canvas
+    }
+
+    private synchronized boolean validateImage() {
+        final int status = this.image.validate(this.config);
+        if (status == VolatileImage.IMAGE_OK) {
+            if (!DCanvas.isAccelerated(this.image, this.config)) this.software.incrementAndGet();
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) { // display changed, remake it to suit
+            final VolatileImage tmpImage = this.config.createCompatibleVolatileImage(this.image.getWidth(), this.image.getHeight(), this.transparency);
+            this.image.flush();
+            this.attach(tmpImage);
+            for (DCanvas view: this.views) view.attach(tmpImage);
+        }
+
+        Graphics2D g = null;
+        try {
+            g = this.image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, this.image.getWidth(), this.image.getHeight());
+        } finally {
+            if (g != null) g.dispose();
+        }
+
+        SurfaceMetrics.record(status == VolatileImage.IMAGE_INCOMPATIBLE, System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Describes whether the image the DCanvas draws on is held in video memory, and how much it uses.
+     * Software draws count the frames presented and the times the canvas was drawn elsewhere while it was not accelerated.
+     * Views describe the image of their canvas.
+     *
+     * @return a description of the image
+     *
+     * @see SurfaceMetrics#getTotals()
+     */
+
+    public SurfaceInfo getSurfaceInfo() {
+        final DCanvas root = (this.parent != null)? this.parent: this;
+        synchronized (root) {
+            if (root.image == null) return new SurfaceInfo("DCanvas", 0, 0, 0, root.software.get()); // disposed
+            return SurfaceInfo.of("DCanvas " + root.width + "x" + root.height, root.image, root.config, root.software.get());
+        }
+    }
+
+    static boolean isAccelerated(VolatileImage image, GraphicsConfiguration config) { // false once Java moves it to normal memory
+        return image.getCapabilities(config).isAccelerated();
+    }
+
+    /**
+     * Scales everything drawn on the DCanvas, so it can be drawn at a different resolution than its coordinates.
+     * Views of the DCanvas are scaled along with it.
+     *
+     * @param sx the number of pixels per unit horizontally
+     * @param sy the number of pixels per unit vertically
+     *
+     * @throws IllegalStateException if the DCanvas is a view
+     */
+
+    protected synchronized void setDeviceScale(double sx, double sy) {
+        if (this.parent != null) throw new IllegalStateException("Views are drawn at the scale of their canvas");
+        this.base.setToScale(sx, sy);
+        this.attach(this.image);
+        for (DCanvas view: this.views) {
+            synchronized (view) {
+                view.place();
+                view.attach(this.image);
+            }
+        }
+    }
+
+    private void place() { // maps the region of a view into the image, through the scale of its root
+        final AffineTransform r = this.parent.base;
+        this.base.setTransform(r);
+        this.base.translate(this.ux, this.uy);
+        this.left = (int)Math.round(r.getScaleX()*this.ux);
+        this.top = (int)Math.round(r.getScaleY()*this.uy);
+        this.width = Math.max(1, (int)Math.round(r.getScaleX()*(this.ux + this.uw)) - this.left); // edges line up with neighbouring views
+        this.height = Math.max(1, (int)Math.round(r.getScaleY()*(this.uy + this.uh)) - this.top);
+    }
+
+    /**
+     * Replaces the image the DCanvas and its views draw on, keeping all drawing attributes.
+     * The contents of the new image are used as they are.
+     *
+     * @param image the image to draw on from now on, at least as large as the canvas
+     *
+     * @return the image that was drawn on until now
+     *
+     * @throws IllegalArgumentException if the image is smaller than the canvas
+     * @throws IllegalStateException    if the DCanvas is a view
+     */
+
+    protected synchronized VolatileImage exchangeImage(VolatileImage image) {
+        if (this.parent != null) throw new IllegalStateException("Views draw on the image of their canvas");
+        if (image.getWidth() < this.width || image.getHeight() < this.height)
+            throw new IllegalArgumentException("Image must be at least " + this.width + "x" + this.height + ", you have: " + image.getWidth() + "x" + image.getHeight());
+
+        final VolatileImage old = this.image;
+        this.attach(image);
+        for (DCanvas view: this.views) view.attach(image);
+        return old;
+    }
+
+    private synchronized void attach(VolatileImage image) { // (re)creates the graphics context, keeping all attributes
+        this.image = image;
 
         if (this.graphics != null) this.graphics.dispose();
 
         this.graphics = this.image.createGraphics();
 
-        this.graphics.setTransform(this.clearTrans);
+        if (this.parent != null) this.graphics.setClip(this.left, this.top, this.width, this.height); // in image space
+        this.setGraphicsTransform(this.clearTrans);
         this.graphics.setBackground(this.background);
         this.graphics.setPaint(this.paint);
         this.graphics.setStroke(this.stroke);
@@ -1094,6 +1517,8 @@ public class DCanvas {
 
     /**
      * Returns what the DCanvas draws on.
+     * The image may be larger than the canvas, and may be shared with views.
+     * The pixels of this canvas start at {@link #getImageX()}, {@link #getImageY()} and span {@link #getWidth()} by {@link #getHeight()}.
      *
      * @return the image being drawn to
      */
@@ -1102,6 +1527,56 @@ public class DCanvas {
         return this.image;
     }
 
+    /**
+     * Returns the X position of the DCanvas within the image it draws on.
+     *
+     * @return the X position of the canvas in the image, in pixels
+     *
+     * @see #getImage()
+     */
+
+    public int getImageX() {
+        return this.left;
+    }
+
+    /**
+     * Returns the Y position of the DCanvas within the image it draws on.
+     *
+     * @return the Y position of the canvas in the image, in pixels
+     *
+     * @see #getImage()
+     */
+
+    public int getImageY() {
+        return this.top;
+    }
+
+    /**
+     * Returns the width of the DCanvas within the image it draws on.
+     * This is the same as {@link #getWidth()}, unless drawing is scaled.
+     *
+     * @return the width of the canvas in the image, in pixels
+     *
+     * @see #getImage()
+     */
+
+    public synchronized int getImageWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the DCanvas within the image it draws on.
+     * This is the same as {@link #getHeight()}, unless drawing is scaled.
+     *
+     * @return the height of the canvas in the image, in pixels
+     *
+     * @see #getImage()
+     */
+
+    public synchronized int getImageHeight() {
+        return this.height;
+    }
+
     /**
      * Returns a snapshot of what the DCanvas draws on.
      *
@@ -1109,7 +1584,11 @@ public class DCanvas {
      */
 
     public synchronized BufferedImage getSnapshot() {
-        return this.image.getSnapshot();
+        final BufferedImage b = this.image.getSnapshot();
+        if (this.left == 0 && this.top == 0 && this.width == b.getWidth() && this.height == b.getHeight()) return b;
+        return b.getSubimage(this.left, this.top,
+            Math.max(1, Math.min(this.width, b.getWidth() - this.left)),
+            Math.max(1, Math.min(this.height, b.getHeight() - this.top)));
     }
 
     /**
@@ -1133,11 +1612,22 @@ public class DCanvas {
 
     /**
      * Releases all system memory used by the DCanvas.
+     * Disposing of a DCanvas again has no effect.
      */
 
     public void dispose() {
+        if (this.isDisposed()) return;
+        if (this.parent != null) {
+            synchronized (this.parent) {
+                this.parent.views.remove(this);
+            }
+        } else {
+            synchronized (this) {
+                for (DCanvas view: new ArrayList<>(this.views)) view.dispose();
+            }
+            this.image.flush();
+        }
         this.graphics.dispose();
-        this.image.flush();
 
         this.graphics = null;
         this.image = null;
@@ -1147,5 +1637,64 @@ public class DCanvas {
         this.stroke = null;
         this.transform = null;
         this.composite = null;
+        this.blender = null;
+    }
+
+    synchronized boolean isDisposed() {
+        return this.image == null;
+    }
+
+    private static class Blender { // reads back the covered region once, blends it on the cpu, and writes it back
+        private BufferedImage src;
+        private BufferedImage dst;
+        private int[]         srcData;
+        private int[]         dstData;
+
+        void blend(VolatileImage target, Graphics2D g, Image img, int sx, int sy, int sw, int sh, int x, int y, int dw, int dh, int cx, int cy, int cw, int ch, BlendMode mode, float alpha) {
+            final int x0 = Math.max(cx, x); // clip to the canvas
+            final int y0 = Math.max(cy, y);
+            final int w = Math.min(cx + cw, x + dw) - x0;
+            final int h = Math.min(cy + ch, y + dh) - y0;
+            if (w <= 0 || h <= 0 || alpha <= 0) return;
+
+            if (this.src == null || this.src.getWidth() < w || this.src.getHeight() < h) { // only ever grows
+                final int bw = Math.max(w, (this.src == null)? 0: this.src.getWidth());
+                final int bh = Math.max(h, (this.src == null)? 0: this.src.getHeight());
+                this.src = new BufferedImage(bw, bh, BufferedImage.TYPE_INT_ARGB_PRE);
+                this.dst = new BufferedImage(bw, bh, BufferedImage.TYPE_INT_ARGB_PRE);
+                this.srcData = ((DataBufferInt)this.src.getRaster().getDataBuffer()).getData();
+                this.dstData = ((DataBufferInt)this.dst.getRaster().getDataBuffer()).getData();
+            }
+
+            Graphics2D s = null;
+            Graphics2D d = null;
+            try {
+                s = this.src.createGraphics();
+                s.setComposite(AlphaComposite.Src);
+                s.setColor(new Color(0, 0, 0, 0));
+                s.fillRect(0, 0, w, h);
+                s.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC, alpha));
+                if (dw != sw || dh != sh) { // scaled as the canvas would draw it
+                    final Object i = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+                    if (i != null) s.setRenderingHint(RenderingHints.KEY_INTERPOLATION, i);
+                }
+                s.setClip(0, 0, w, h);
+                s.drawImage(img, x - x0, y - y0, x - x0 + dw, y - y0 + dh, sx, sy, sx + sw, sy + sh, null); // parts off the canvas are clipped
+
+                d = this.dst.createGraphics();
+                d.setComposite(AlphaComposite.Src);
+                d.drawImage(target, 0, 0, w, h, x0, y0, x0 + w, y0 + h, null);
+            } finally {
+                if (s != null) s.dispose();
+                if (d != null) d.dispose();
+            }
+
+            final int stride = this.src.getWidth();
+            for (int row = 0, i = 0; row < h; row++, i += stride)
+                mode.blend(this.srcData, i, this.dstData, i, w);
+
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(this.dst, x0, y0, x0 + w, y0 + h, 0, 0, w, h, null);
+        }
     }
 }
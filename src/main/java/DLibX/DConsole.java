@@ -1,10 +1,14 @@
 package DLibX;
 
+import DLibX.util.FramePacer;
+
 import java.awt.AWTException;
+import java.awt.BufferCapabilities;
 import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.DisplayMode;
 import java.awt.Font;
 import java.awt.Frame;
 import java.awt.Graphics2D;
@@ -13,8 +17,10 @@ import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.ImageCapabilities;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Robot;
 import java.awt.Toolkit;
 import java.awt.Transparency;
@@ -29,14 +35,18 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.awt.image.VolatileImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Timer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Consumer;
 import javax.imageio.ImageIO;
+import javax.swing.Timer;
 
 /**
  * Handles user input and output to graphical device.
@@ -77,6 +87,45 @@ public class DConsole extends DCanvas {
      * This provides virtual and unlimited cursor movement.
      */
     public static final int CURSOR_DISABLED = 6;
+    /**
+     * Frames are copied to a front buffer, which is drawn by the event dispatch thread when the window repaints.
+     * This is the default, and behaves well alongside other AWT components.
+     */
+    public static final int PRESENT_REPAINT = 7;
+    /**
+     * Frames are drawn to a back buffer from the drawing thread and copied to the window immediately.
+     */
+    public static final int PRESENT_BLIT = 8;
+    /**
+     * Frames are drawn to a back buffer from the drawing thread, which is swapped with the window contents by the graphics device.
+     * Falls back to PRESENT_BLIT where page flipping is not supported.
+     */
+    public static final int PRESENT_FLIP = 9;
+    /**
+     * Frames are drawn at the FULL rate.
+     */
+    public static final int RATE_FULL = 10;
+    /**
+     * Frames are drawn at a REDUCED rate, see {@link #setReducedRate(double)}.
+     */
+    public static final int RATE_REDUCED = 11;
+    /**
+     * No frames are drawn; the frame loop is PAUSED.
+     */
+    public static final int RATE_PAUSED = 12;
+    /**
+     * A logical size is scaled to the window by NEAREST neighbour; sharp, suited to pixel art.
+     */
+    public static final int SCALE_NEAREST = 13;
+    /**
+     * A logical size is scaled to the window BILINEARly; smooth.
+     */
+    public static final int SCALE_BILINEAR = 14;
+    /**
+     * Cursor is invisible, and only its RELATIVE movement is reported, see {@link #getMouseDelta()}.
+     * The cursor is moved back to the middle of the window only when it nears an edge.
+     */
+    public static final int CURSOR_RELATIVE = 15;
 
     //////////////////////////////////////////////////////////////////////////// FUNCTIONAL PARTS OF WINDOW / DRAWING CANVAS
 
@@ -84,9 +133,14 @@ public class DConsole extends DCanvas {
     private final Canvas                  canvas;      // canvas that is drawn to
 
     private VolatileImage                 onscreen;    // what is displayed on screen
+    private volatile BufferStrategy       strategy;    // active rendering buffers, null when repainting
+    private final Object                  presentLock; // held while presenting, or changing what is presented to
+    private Presenter                     presenter;   // presents frames on its own thread, null when redraw presents
+    private boolean                       held;        // last frame was finished while hidden, so it stayed on the canvas
+    private final Object                  redrawLock;  // waited on for on-demand redraws
 
     private final ComponentAdapter        component;   // window resize listener
-    private final ArrayList<EventAdapter> event;       // event listen
+    private final EventListeners          event;       // event listeners, by type
     private final ExceptionList           exception;   // exception handler
     private final FocusAdapter            focus;       // focus listener
     private final KeyList                 key;         // keyboard input listener
@@ -97,11 +151,15 @@ public class DConsole extends DCanvas {
     private final GraphicsEnvironment     environment; // get environment info and make compatible stuff
     private final GraphicsConfiguration   config;      // get configuration info and make compatible stuff
 
-    private final Robot                   robot;       // deals with mouse lock
+    private ImageLoader                   images;      // image loading, made on first use
 
-    private final ImageLoader             images;      // image loading
+    private final InputState[]            input;       // latched in turn, so the current one is never written
+    private volatile InputState           current;     // latest latched input
+    private long                          inputFrame;  // number of latches, guarded by input
+    private volatile InputQueue           queue;       // every input event in order, null unless enabled
+    private boolean                       ownImages;   // images belongs to this console, and is unloaded with it
 
-    private final Cursor                  blank;       // invisible cursor
+    private PostProcessor                 post;        // filters applied to every frame before it is displayed
 
     //////////////////////////////////////////////////////////////////////////// WINDOW STATE IMFORMATION
 
@@ -113,6 +171,26 @@ public class DConsole extends DCanvas {
     private boolean   lock;        // mouse lock catch
     private boolean   lockFocus;
     private int       close;
+    private int       present;     // requested present mode
+
+    private volatile boolean resized;      // window size changed, drawing surface not yet fixed
+    private boolean          invalid;      // something changed that should be redrawn, guarded by redrawLock
+    private boolean          animating;    // frames were requested until animateUntil
+    private long             animateUntil;
+    private volatile boolean iconified;    // minimized by the user
+    private volatile boolean focused;      // has keyboard focus
+    private volatile int     hiddenRate;   // rate policy while hidden
+    private volatile int     unfocusedRate;// rate policy while visible but not focused
+    private volatile double  reducedRate;  // frames per second for RATE_REDUCED
+    private volatile Dimension logical;    // fixed size of the DCanvas, null when it follows the window
+    private volatile int     scaling;      // how a logical size is scaled to the window
+    private volatile double  renderScale;  // pixels drawn per unit of the DCanvas
+    private volatile Timer   resizeTimer;  // fixes drawing surface on the event thread once resizing settles, made on first resize
+    private DisplayMode      preMode;      // restores the desktop display mode, null if it was not changed
+
+    private static final int RESIZE_SETTLE_MS = 100;
+
+    private static Thread    preloader;    // warms up fonts while the first console sets up graphics
 
     //////////////////////////////////////////////////////////////////////////// CONSTRUCTORS
 
@@ -150,27 +228,32 @@ public class DConsole extends DCanvas {
      */
 
     public DConsole(String title, int width, int height, boolean visible) {
-        super(width, height, Transparency.OPAQUE);
-
-        System.setProperty("sun.awt.noerasebackground", "true"); // set system properties
-        System.setProperty("sun.java2d.opengl", "true");
+        super(DConsole.preload(width), height, Transparency.OPAQUE); // fonts load while the graphics are set up
 
         this.component = new ComponentList(); // set up listeners
-        this.event     = new ArrayList<>();
+        this.event     = new EventListeners();
         this.exception = new ExceptionList();
         this.focus     = new FocusList();
         this.key       = new KeyList();
         this.mouse     = new MouseList();
         this.window    = new WindowList();
+        this.input     = new InputState[] {new InputState(0x10000, 64), new InputState(0x10000, 64)};
+        this.current   = this.input[0];
 
-        if (title == null) title = initTitle(); // if title is null, make default title of main class name
-        this.frame = new Frame(title); // make main frame
+        this.frame = new Frame((title == null)? DConsole.initTitle(): title); // make main frame, named after the main class if no title
+        this.presentLock = new Object();
+        this.redrawLock = new Object();
 
         this.canvas = new Canvas() { // set up all event listeners. anon because why not
             public static final long serialVersionUID = 34742732665L; //fisharecool (lint told me to make this)
 
             @Override
             public void paint(Graphics g) {
+                if (DConsole.this.strategy != null) return; // frames go through the buffer strategy instead
+                if (DConsole.this.validateOnscreen()) { // front buffer was lost, wait for the next frame
+                    DConsole.this.invalidate();
+                    return;
+                }
                 g.drawImage(DConsole.this.onscreen, 0, 0, this); // draw front buffer
                 Toolkit.getDefaultToolkit().sync(); // yaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaayyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyy
             }
@@ -181,11 +264,6 @@ public class DConsole extends DCanvas {
             }
         };
 
-        this.blank = DConsole.makeBlankCursor();
-        this.images = new ImageLoader();
-
-        this.robot = DConsole.makeRobot();
-
         this.environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
         this.screen = this.environment.getDefaultScreenDevice();
         this.config = this.screen.getDefaultConfiguration();
@@ -207,11 +285,18 @@ public class DConsole extends DCanvas {
         this.frame.pack();
         this.frame.setLocationRelativeTo(null);
 
+        this.renderScale = 1;
         this.fix();
 
         this.close = DConsole.ON_CLOSE_EXIT;
+        this.present = DConsole.PRESENT_REPAINT;
 
         this.lockFocus = true;
+        this.focused = true;
+        this.hiddenRate = DConsole.RATE_PAUSED;
+        this.unfocusedRate = DConsole.RATE_FULL;
+        this.reducedRate = 10;
+        this.scaling = DConsole.SCALE_NEAREST;
 
         this.frame.setVisible(visible);
 
@@ -219,6 +304,49 @@ public class DConsole extends DCanvas {
         this.canvas.requestFocusInWindow();
     }
 
+    /**
+     * Starts loading fonts in the background, so the first DConsole opens sooner.
+     * <p>
+     * Fonts and the graphics system take a while to set up, and each DConsole needs both.
+     * Consoles start this themselves, but calling it at the start of a program lets it overlap with the program's own setup too.
+     * The rendering pipeline is chosen by this, so {@link Pipeline#select(int)} must be called before.
+     */
+
+    public static void preload() {
+        Pipeline.bootstrap();
+        synchronized (DConsole.class) {
+            if (DConsole.preloader != null) return;
+            DConsole.preloader = new Thread("DConsole Preload") {
+                @Override
+                public void run() {
+                    final Font f = new Font(Font.SANS_SERIF, Font.PLAIN, 12); // the default DCanvas font
+                    f.getStringBounds("DLibX", new FontRenderContext(null, false, false));
+                    Toolkit.getDefaultToolkit();
+                }
+            };
+            DConsole.preloader.setDaemon(true);
+            DConsole.preloader.start();
+        }
+    }
+
+    private static int preload(int width) { // passes the width through, so preloading starts before the DCanvas is made
+        DConsole.preload();
+        return width;
+    }
+
+    private static class Shared { // made on first use, and shared by every console
+        static final Robot  ROBOT = DConsole.makeRobot();         // deals with mouse lock
+        static final Cursor BLANK = DConsole.makeBlankCursor();   // invisible cursor
+    }
+
+    private synchronized ImageLoader getImages() {
+        if (this.images == null) {
+            this.images = new ImageLoader();
+            this.ownImages = true;
+        }
+        return this.images;
+    }
+
     private static Robot makeRobot() {
         Robot r = null;
         try {
@@ -237,7 +365,7 @@ public class DConsole extends DCanvas {
         return Toolkit.getDefaultToolkit().createCustomCursor(i, p, n);
     }
 
-    private String initTitle() { //gets title from main's class name
+    private static String initTitle() { //gets title from main's class name, the bottom frame of the stack
         StackTraceElement[] s = Thread.currentThread().getStackTrace();
         String t = s[s.length - 1].getClassName();
         t = t.substring(t.lastIndexOf(".") + 1);
@@ -252,27 +380,33 @@ public class DConsole extends DCanvas {
     }
 
     private synchronized void fix() {
+        this.resized = false;
+
         Dimension dimensions = this.canvas.getSize();
         double width = Math.max(1, dimensions.getWidth());
         double height = Math.max(1, dimensions.getHeight());
         dimensions.setSize(width, height);
 
-        VolatileImage tmpImage = this.config.createCompatibleVolatileImage(dimensions.width, dimensions.height);
+        if (this.onscreen == null || DCanvas.needsCapacity(this.onscreen, dimensions.width, dimensions.height)) { // grows in steps like the DCanvas
+            VolatileImage tmpImage = this.config.createCompatibleVolatileImage(DCanvas.capacity(dimensions.width), DCanvas.capacity(dimensions.height));
+
+            synchronized (this.presentLock) {
+                if (this.onscreen != null) {
+                    Graphics2D g = null;
+                    try {
+                        g = tmpImage.createGraphics();
+                        g.drawImage(this.onscreen, 0, 0, this.canvas);
+                    } finally {
+                        if (g != null) g.dispose();
+                    }
+                    this.onscreen.flush();
+                }
 
-        if (this.onscreen != null) {
-            Graphics2D g = null;
-            try {
-                g = tmpImage.createGraphics();
-                g.drawImage(this.onscreen, 0, 0, this.canvas);
-            } finally {
-                if (g != null) g.dispose();
+                this.onscreen = tmpImage;
             }
-            this.onscreen.flush();
         }
 
-        this.onscreen = tmpImage;
-
-        this.setSize(dimensions.width, dimensions.height);
+        this.applySize();
 
         this.frame.validate();
         this.canvas.validate();
@@ -282,19 +416,573 @@ public class DConsole extends DCanvas {
 
     /**
      * Clears screen, and draws buffer.
+     * <p>
+     * While the DConsole is hidden the frame is finished but not presented, so it can still be saved with {@link #saveImage(String)}.
      */
 
     public synchronized void redraw() {
-        Graphics2D g = null;
-        try {
-            g = this.onscreen.createGraphics();
-            g.drawImage(this.getImage(), 0, 0, this.canvas);
-        } finally {
-            g.dispose();
+        this.latchInput(); // the frame is over, input from now on belongs to the next
+        if (this.resized) this.fix(); // resizes since the last frame are applied at once
+        this.held = this.isHidden();
+        if (this.held) return; // nobody would see it, the frame stays on the canvas
+        if (this.strategy == null && this.present != DConsole.PRESENT_REPAINT && this.canvas.isDisplayable()) this.createStrategy(); // window was not shown yet
+        if (this.validate()) { // drawing was lost with the display, keep showing the last frame
+            SurfaceMetrics.recordLostFrame();
+            this.invalidate();
+            return;
+        }
+
+        final int w = this.getImageWidth();
+        final int h = this.getImageHeight();
+
+        if (this.presenter != null) { // hand the frame over and carry on with a free buffer
+            if (this.post != null) this.post.apply(this); // contents are not kept, so filter in place
+            VolatileImage next = this.presenter.handoff(this.getImage(), w, h);
+            if (DCanvas.needsCapacity(next, w, h)) { // resized since this buffer was last drawn on
+                next.flush();
+                next = this.createBuffer();
+            }
+            this.exchangeImage(next);
+            return;
+        }
+
+        if (this.post != null) {
+            final BufferedImage filtered = this.post.process(this); // filtered copy, canvas is left untouched
+            this.present(filtered, filtered.getWidth(), filtered.getHeight());
+        } else {
+            this.present(this.getImage(), w, h);
+        }
+    }
+
+    private void present(Image frame, int w, int h) { // shows a finished frame, from whichever thread presents
+        synchronized (this.presentLock) {
+            if (this.strategy != null) { // active rendering, straight to the window from this thread
+                do {
+                    do {
+                        Graphics g = this.strategy.getDrawGraphics();
+                        try {
+                            this.blit((Graphics2D)g, frame, w, h);
+                        } finally {
+                            g.dispose();
+                        }
+                    } while (this.strategy.contentsRestored()); // buffer was lost and remade while drawing
+                    this.strategy.show();
+                } while (this.strategy.contentsLost());
+                Toolkit.getDefaultToolkit().sync();
+                return;
+            }
+
+            this.validateOnscreen(); // overwritten anyway, but may need remaking
+            Graphics2D g = null;
+            try {
+                g = this.onscreen.createGraphics();
+                this.blit(g, frame, w, h);
+            } finally {
+                if (g != null) g.dispose();
+            }
         }
         this.canvas.repaint();
     }
 
+    private boolean validateOnscreen() { // true if the front buffer lost its contents
+        synchronized (this.presentLock) {
+            final int status = this.onscreen.validate(this.config);
+            if (status == VolatileImage.IMAGE_OK) return false;
+
+            final long start = System.nanoTime();
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                final VolatileImage tmpImage = this.config.createCompatibleVolatileImage(this.onscreen.getWidth(), this.onscreen.getHeight());
+                this.onscreen.flush();
+                this.onscreen = tmpImage;
+            }
+            SurfaceMetrics.record(status == VolatileImage.IMAGE_INCOMPATIBLE, System.nanoTime() - start);
+            return true;
+        }
+    }
+
+    private void blit(Graphics2D g, Image frame, int w, int h) { // draws a frame to the window, scaling a logical size or render scale
+        if (this.logical == null && w == this.canvas.getWidth() && h == this.canvas.getHeight()) {
+            g.drawImage(frame, 0, 0, w, h, 0, 0, w, h, this.canvas);
+            return;
+        }
+
+        final Rectangle v = this.viewport();
+        final int cw = this.canvas.getWidth();
+        final int ch = this.canvas.getHeight();
+
+        g.setColor(Color.BLACK); // letterbox
+        if (v.x > 0) {
+            g.fillRect(0, 0, v.x, ch);
+            g.fillRect(v.x + v.width, 0, cw - v.x - v.width, ch);
+        }
+        if (v.y > 0) {
+            g.fillRect(0, 0, cw, v.y);
+            g.fillRect(0, v.y + v.height, cw, ch - v.y - v.height);
+        }
+
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, (this.scaling == DConsole.SCALE_BILINEAR)?
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR: RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(frame, v.x, v.y, v.x + v.width, v.y + v.height, 0, 0, w, h, this.canvas);
+    }
+
+    private Rectangle viewport() { // largest area of the window with the logical aspect ratio, centred
+        final Dimension l = this.logical;
+        final int cw = Math.max(1, this.canvas.getWidth());
+        final int ch = Math.max(1, this.canvas.getHeight());
+        if (l == null) return new Rectangle(0, 0, cw, ch);
+
+        final double scale = Math.min((double)cw/l.width, (double)ch/l.height);
+        final int w = Math.max(1, (int)Math.round(l.width*scale));
+        final int h = Math.max(1, (int)Math.round(l.height*scale));
+        return new Rectangle((cw - w)/2, (ch - h)/2, w, h);
+    }
+
+    private Point toLogical(Point p) { // window to logical coordinates
+        if (this.logical == null) return new Point(p);
+        final Dimension l = this.logical;
+        final Rectangle v = this.viewport();
+        return new Point(
+            (int)Math.floor((p.x - v.x)*(double)l.width/v.width),
+            (int)Math.floor((p.y - v.y)*(double)l.height/v.height));
+    }
+
+    //////////////////////////////////////////////////////////////////////////// LOGICAL SIZE
+
+    /**
+     * Fixes the size of the DCanvas, which is then scaled to fit the window when presented.
+     * <p>
+     * The DCanvas keeps this size however the window is resized, and is shown as large as fits with its aspect ratio kept, with black bars filling the rest.
+     * {@link #getWidth()}, {@link #getHeight()} and the mouse position are given in the logical size.
+     * Drawing at a small logical size, such as 640x360 for pixel art, is far cheaper than drawing at the size of a large window.
+     *
+     * @param width  the logical width in pixels
+     * @param height the logical height in pixels
+     *
+     * @throws IllegalArgumentException if {@code width < 1} or {@code height < 1}
+     *
+     * @see #setScalingMode(int)
+     */
+
+    public synchronized void setLogicalSize(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Logical dimensions must be at least 1, you have: " + width + "x" + height);
+        this.logical = new Dimension(width, height);
+        this.applySize();
+        this.invalidate();
+    }
+
+    /**
+     * Stops using a logical size, so the DCanvas follows the size of the window again.
+     */
+
+    public synchronized void clearLogicalSize() {
+        if (this.logical == null) return;
+        this.logical = null;
+        this.fix();
+        this.invalidate();
+    }
+
+    /**
+     * Returns the fixed size of the DCanvas.
+     *
+     * @return the logical size, or null if the DCanvas follows the size of the window
+     */
+
+    public Dimension getLogicalSize() {
+        final Dimension l = this.logical;
+        return (l == null)? null: new Dimension(l);
+    }
+
+    /**
+     * Sets the resolution the DCanvas is drawn at, relative to its size.
+     * <p>
+     * At a scale below 1 fewer pixels are drawn, and frames are scaled up to the window when presented.
+     * Coordinates, {@link #getWidth()}, {@link #getHeight()} and the mouse position are not affected, so nothing has to be drawn differently.
+     * Changing the scale rarely reallocates the image, so it may be changed every frame, for example by a {@link DLibX.util.ResolutionScaler}.
+     * SCALE_BILINEAR usually looks best for scaled frames.
+     *
+     * @param scale more than 0, up to 1, the fraction of the full resolution to draw at
+     *
+     * @throws IllegalArgumentException if the scale is not more than 0 and at most 1
+     */
+
+    public synchronized void setRenderScale(double scale) {
+        if (!(scale > 0 && scale <= 1)) throw new IllegalArgumentException("Render scale must be more than 0 and at most 1, you have: " + scale);
+        if (scale == this.renderScale) return;
+        this.renderScale = scale;
+        this.applySize();
+        this.invalidate();
+    }
+
+    /**
+     * Returns the resolution the DCanvas is drawn at, relative to its size.
+     *
+     * @return the fraction of the full resolution drawn at
+     */
+
+    public double getRenderScale() {
+        return this.renderScale;
+    }
+
+    private synchronized void applySize() { // sizes the DCanvas to the logical or window size, at the render scale
+        final Dimension l = this.logical;
+        final int width = (l != null)? l.width: Math.max(1, this.canvas.getWidth());
+        final int height = (l != null)? l.height: Math.max(1, this.canvas.getHeight());
+        final int pixelWidth = Math.max(1, (int)Math.ceil(width*this.renderScale));
+        final int pixelHeight = Math.max(1, (int)Math.ceil(height*this.renderScale));
+
+        this.resize(pixelWidth, pixelHeight);
+        this.setDeviceScale((double)pixelWidth/width, (double)pixelHeight/height);
+    }
+
+    /**
+     * Sets how a logical size, or a render scale below 1, is scaled to the window.
+     *
+     * @param mode SCALE_NEAREST or SCALE_BILINEAR
+     */
+
+    public void setScalingMode(int mode) {
+        if (mode != DConsole.SCALE_NEAREST && mode != DConsole.SCALE_BILINEAR) {
+            throw new IllegalArgumentException("Scaling mode must be SCALE_NEAREST or SCALE_BILINEAR, you have: " + mode);
+        }
+        this.scaling = mode;
+        this.invalidate();
+    }
+
+    /**
+     * Sets if frames are presented by a dedicated thread.
+     * <p>
+     * Normally {@link #redraw()} returns once the frame is on screen.
+     * With a presenter thread, the DCanvas draws on one of three buffers: redraw hands the finished buffer to the presenter and immediately continues on a free one.
+     * The presenter always shows the most recently finished frame, and frames finished faster than they can be shown are skipped.
+     * This stops how long presenting takes from limiting how fast frames are drawn.
+     * <p>
+     * The contents of the DCanvas are <b>not</b> kept from one frame to the next while a presenter thread is used.
+     * Every frame should be drawn completely, usually starting with {@link #clear()}.
+     *
+     * @param inUse if frames should be presented by a dedicated thread
+     */
+
+    public synchronized void setPresentThread(boolean inUse) {
+        if (inUse == (this.presenter != null)) return;
+
+        if (inUse) {
+            this.presenter = new Presenter(this.createBuffer(), this.createBuffer());
+            this.presenter.start();
+        } else {
+            this.presenter.finish();
+            this.presenter = null;
+        }
+    }
+
+    /**
+     * Checks if frames are presented by a dedicated thread.
+     *
+     * @return if frames are presented by a dedicated thread
+     *
+     * @see #setPresentThread(boolean)
+     */
+
+    public synchronized boolean isPresentThread() {
+        return this.presenter != null;
+    }
+
+    private VolatileImage createBuffer() { // matches the image of the DCanvas
+        return this.config.createCompatibleVolatileImage(
+            DCanvas.capacity(this.getImageWidth()), DCanvas.capacity(this.getImageHeight()), this.getImage().getTransparency());
+    }
+
+    /**
+     * Sets how frames are presented on screen by {@link #redraw()}.
+     * <p>
+     * PRESENT_REPAINT copies every frame to a front buffer and has the event dispatch thread draw it, which is two full copies and a thread hand-off per frame.
+     * PRESENT_BLIT and PRESENT_FLIP draw straight to the window from the thread calling redraw, and ignore repaints requested by the system.
+     * If page flipping is unavailable, PRESENT_FLIP falls back to blitting; {@link #getPresentMode()} returns the mode actually in use.
+     *
+     * @param mode PRESENT_REPAINT, PRESENT_BLIT or PRESENT_FLIP
+     */
+
+    public synchronized void setPresentMode(int mode) {
+        if (mode != DConsole.PRESENT_REPAINT && mode != DConsole.PRESENT_BLIT && mode != DConsole.PRESENT_FLIP) {
+            throw new IllegalArgumentException("Present mode must be PRESENT_REPAINT, PRESENT_BLIT or PRESENT_FLIP, you have: " + mode);
+        }
+        this.present = mode;
+        this.createStrategy();
+    }
+
+    /**
+     * Returns how frames are presented on screen.
+     * This may be PRESENT_BLIT when PRESENT_FLIP was requested but page flipping is unsupported.
+     *
+     * @return PRESENT_REPAINT, PRESENT_BLIT or PRESENT_FLIP
+     */
+
+    public synchronized int getPresentMode() {
+        if (this.strategy == null) return DConsole.PRESENT_REPAINT;
+        return this.strategy.getCapabilities().isPageFlipping()? DConsole.PRESENT_FLIP: DConsole.PRESENT_BLIT;
+    }
+
+    private synchronized void createStrategy() { // remade whenever the window loses its native resources
+        synchronized (this.presentLock) {
+            if (this.strategy != null) this.strategy.dispose();
+            this.strategy = null;
+
+            final int mode = this.fullscreen? DConsole.PRESENT_FLIP: this.present; // exclusive mode can always flip
+
+            if (mode == DConsole.PRESENT_REPAINT || !this.canvas.isDisplayable()) {
+                this.canvas.setIgnoreRepaint(false);
+                return;
+            }
+
+            final ImageCapabilities accelerated = new ImageCapabilities(true);
+            try {
+                if (mode == DConsole.PRESENT_FLIP) {
+                    try {
+                        this.canvas.createBufferStrategy(2, new BufferCapabilities(accelerated, accelerated, BufferCapabilities.FlipContents.UNDEFINED));
+                    } catch (AWTException e) { // no page flipping here, blit instead
+                        this.canvas.createBufferStrategy(2, new BufferCapabilities(accelerated, accelerated, null));
+                    }
+                } else {
+                    this.canvas.createBufferStrategy(2, new BufferCapabilities(accelerated, accelerated, null));
+                }
+            } catch (AWTException e) {
+                this.canvas.createBufferStrategy(2); // unaccelerated, but always available
+            }
+
+            this.strategy = this.canvas.getBufferStrategy();
+            this.canvas.setIgnoreRepaint(true);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////// VISIBILITY
+
+    /**
+     * Checks if the DConsole cannot be seen, because it is minimized or not visible.
+     * Frames are not presented while hidden, but {@link #redraw()} still finishes them, so the last one can be saved with {@link #saveImage(String)}.
+     * <p>
+     * AWT does not report when a window is completely covered by other windows, so a covered DConsole is not considered hidden.
+     *
+     * @return if the DConsole is hidden
+     */
+
+    public boolean isHidden() {
+        return this.iconified || !this.canvas.isShowing();
+    }
+
+    /**
+     * Checks if the DConsole has keyboard focus.
+     *
+     * @return if the DConsole is focused
+     */
+
+    public boolean isFocused() {
+        return this.focused;
+    }
+
+    /**
+     * Sets how often frames are drawn while the DConsole is hidden, and while it is visible but not focused.
+     * The policy is applied by {@link GameLoop}; other loops may follow {@link #getRatePolicy()}.
+     * By default, hidden consoles are paused and unfocused consoles run at the full rate.
+     *
+     * @param hidden    RATE_FULL, RATE_REDUCED or RATE_PAUSED while hidden
+     * @param unfocused RATE_FULL, RATE_REDUCED or RATE_PAUSED while not focused
+     */
+
+    public void setRatePolicy(int hidden, int unfocused) {
+        DConsole.checkRate(hidden);
+        DConsole.checkRate(unfocused);
+        this.hiddenRate = hidden;
+        this.unfocusedRate = unfocused;
+        this.stateChanged();
+    }
+
+    private static void checkRate(int rate) {
+        if (rate != DConsole.RATE_FULL && rate != DConsole.RATE_REDUCED && rate != DConsole.RATE_PAUSED) {
+            throw new IllegalArgumentException("Rate policy must be RATE_FULL, RATE_REDUCED or RATE_PAUSED, you have: " + rate);
+        }
+    }
+
+    /**
+     * Sets how many frames per second are drawn at RATE_REDUCED.
+     *
+     * @param fps the reduced number of frames per second
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public void setReducedRate(double fps) {
+        if (!(fps > 0)) throw new IllegalArgumentException("Reduced rate must be positive, you have: " + fps);
+        this.reducedRate = fps;
+    }
+
+    /**
+     * Returns how many frames per second are drawn at RATE_REDUCED.
+     *
+     * @return the reduced number of frames per second
+     */
+
+    public double getReducedRate() {
+        return this.reducedRate;
+    }
+
+    /**
+     * Returns how often frames should be drawn right now, following the rate policy for the current visibility and focus.
+     *
+     * @return RATE_FULL, RATE_REDUCED or RATE_PAUSED
+     *
+     * @see #setRatePolicy(int, int)
+     */
+
+    public int getRatePolicy() {
+        if (this.isHidden()) return this.hiddenRate;
+        if (!this.focused) return this.unfocusedRate;
+        return DConsole.RATE_FULL;
+    }
+
+    /**
+     * Waits while the rate policy is RATE_PAUSED.
+     * <p>
+     * If the thread is interrupted, this returns early and leaves its interrupt status set.
+     *
+     * @return if this had to wait
+     */
+
+    public boolean awaitRatePolicy() {
+        boolean waited = false;
+        synchronized (this.redrawLock) {
+            while (this.getRatePolicy() == DConsole.RATE_PAUSED) {
+                try {
+                    this.redrawLock.wait(250); // showing state is not always announced, so check now and then
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                waited = true;
+            }
+        }
+        return waited;
+    }
+
+    private void stateChanged() { // wakes anything waiting on the rate policy
+        synchronized (this.redrawLock) {
+            this.redrawLock.notifyAll();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////// ON-DEMAND REDRAW
+
+    /**
+     * Marks the DConsole as needing to be redrawn, waking up {@link #awaitRedraw()}.
+     * Keyboard, mouse and resize input invalidate the DConsole automatically.
+     * This may be called from any thread.
+     */
+
+    public void invalidate() {
+        synchronized (this.redrawLock) {
+            this.invalid = true;
+            this.redrawLock.notifyAll();
+        }
+    }
+
+    /**
+     * Requests that frames be drawn continuously for a length of time, such as for an animation.
+     * Overlapping requests extend each other.
+     * This may be called from any thread, including timers.
+     *
+     * @param ms how long frames should be drawn for in milliseconds
+     */
+
+    public void requestAnimation(int ms) {
+        final long until = System.nanoTime() + ms*1_000_000L;
+        synchronized (this.redrawLock) {
+            if (!this.animating || until - this.animateUntil > 0) this.animateUntil = until;
+            this.animating = true;
+            this.redrawLock.notifyAll();
+        }
+    }
+
+    /**
+     * Checks if the DConsole needs to be redrawn, because it was invalidated or an animation is running.
+     *
+     * @return if a frame should be drawn
+     */
+
+    public boolean isInvalid() {
+        synchronized (this.redrawLock) {
+            return this.invalid || this.isAnimating();
+        }
+    }
+
+    /**
+     * Waits until the DConsole needs to be redrawn, then clears the invalidated state.
+     * Returns immediately while an animation is running.
+     * Drawing only after this returns makes an application use no processor time while nothing changes.
+     * <p>
+     * If the thread is interrupted, this returns early and leaves its interrupt status set.
+     *
+     * @return if this had to wait
+     */
+
+    public boolean awaitRedraw() {
+        boolean waited = false;
+        synchronized (this.redrawLock) {
+            while (!this.invalid && !this.isAnimating()) {
+                try {
+                    this.redrawLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                waited = true;
+            }
+            this.invalid = false;
+        }
+        return waited;
+    }
+
+    private boolean isAnimating() { // holding redrawLock
+        if (this.animating && this.animateUntil - System.nanoTime() <= 0) this.animating = false;
+        return this.animating;
+    }
+
+    /**
+     * Sets the filters applied to every frame when it is drawn to the screen.
+     * The DCanvas itself is not modified, so drawing continues on the unfiltered image.
+     * If the PostProcessor is null, frames are drawn unfiltered.
+     *
+     * @param post the filters to apply to every frame
+     */
+
+    public synchronized void setPostProcessor(PostProcessor post) {
+        this.post = post;
+    }
+
+    /**
+     * Returns the filters applied to every frame when it is drawn to the screen.
+     *
+     * @return the filters applied to every frame, or null if frames are drawn unfiltered
+     */
+
+    public PostProcessor getPostProcessor() {
+        return this.post;
+    }
+
+    /**
+     * Sets the ImageLoader that images drawn by filename are loaded into, so consoles can share loaded images.
+     * A shared loader is not unloaded when the console is disposed.
+     * If loader is null, the console goes back to its own loader.
+     *
+     * @param loader the image loader to use, or null
+     *
+     * @see #drawImage(String, double, double)
+     */
+
+    public synchronized void setImageLoader(ImageLoader loader) {
+        if (this.ownImages && loader != this.images) this.images.unloadAll();
+        this.images = loader;
+        this.ownImages = false; // made again on first use if null
+    }
+
     /**
      * Draws an image specified by the filename on the screen at the specified coordinates.
      * <p>
@@ -306,28 +994,37 @@ public class DConsole extends DCanvas {
      */
 
     public void drawImage(String filename, double x, double y) {
-        if (!this.images.contains(filename))
-            this.images.load(filename);
-        this.drawImage(this.images.get(filename), x, y);
+        this.drawImage(this.getImages().getOrLoad(filename), x, y);
     }
 
     /**
      * Takes a snapshot of the DConsole and saves it to the specified file.
+     * <p>
+     * The image is saved at the resolution it is drawn at, {@link #getImageWidth()} by {@link #getImageHeight()}, with any post processing applied.
+     * It is taken from what was drawn rather than from the window, so it works however frames are presented, and while the DConsole is hidden.
      *
      * @param filename the file to save to
      */
 
-    public void saveImage(String filename) {
+    public synchronized void saveImage(String filename) { // no redraw can change the frame meanwhile
         final String ext = filename.substring(filename.lastIndexOf(".") + 1);
 
         try {
-            ImageIO.write(this.onscreen.getSnapshot(), ext, new File(filename));
+            ImageIO.write(this.getLastFrame(), ext, new File(filename));
         } catch(IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
     }
 
+    private synchronized BufferedImage getLastFrame() { // the last finished frame, at the resolution it was drawn
+        if (this.presenter != null && !this.held) { // the canvas is a fresh buffer, the frame was handed over already filtered
+            final BufferedImage b = this.presenter.snapshot();
+            if (b != null) return b;
+        }
+        return (this.post != null)? this.post.process(this): this.getSnapshot();
+    }
+
     //////////////////////////////////////////////////////////////////////////// WINDOW ATTRIBUTE GETTERS
 
     /**
@@ -337,7 +1034,8 @@ public class DConsole extends DCanvas {
      */
 
     public int getWidth() {
-        return this.canvas.getWidth();
+        final Dimension l = this.logical;
+        return (l != null)? l.width: this.canvas.getWidth();
     }
 
     /**
@@ -347,7 +1045,8 @@ public class DConsole extends DCanvas {
      */
 
     public int getHeight() {
-        return this.canvas.getHeight();
+        final Dimension l = this.logical;
+        return (l != null)? l.height: this.canvas.getHeight();
     }
 
     /**
@@ -357,7 +1056,7 @@ public class DConsole extends DCanvas {
      */
 
     public Dimension getSize() {
-        return this.canvas.getSize();
+        return new Dimension(this.getWidth(), this.getHeight());
     }
 
     /**
@@ -394,12 +1093,12 @@ public class DConsole extends DCanvas {
      */
 
     public void setSize(int width, int height) {
-        this.resize(width, height);
         this.setSize(new Dimension(width, height));
     }
 
     /**
      * Sets the height and width of the drawable surface of the DConsole.
+     * A logical size and render scale are kept.
      *
      * @param dimensions the Dimensions to set the DConsole to be
      */
@@ -407,6 +1106,7 @@ public class DConsole extends DCanvas {
     public void setSize(Dimension dimensions) {
         this.canvas.setSize(dimensions);
         this.frame.pack();
+        this.applySize(); // no resize event comes if the size did not change
     }
 
     /**
@@ -490,17 +1190,20 @@ public class DConsole extends DCanvas {
 
     /**
      * Pauses operation of the program for a given amount of time.
+     * The pause is precise to a few microseconds, rather than the millisecond or more a plain sleep may overshoot by.
      *
      * @param ms the length of time to pause the program in milliseconds
      * @param ns 0-999999 additional nanoseconds to sleep.
+     *
+     * @throws IllegalArgumentException if {@code ms} is negative, or {@code ns} is outside 0-999999
+     *
+     * @see FramePacer#sleep(long)
      */
 
     public static void pause(int ms, int ns) {
-        try {
-            Thread.sleep(ms, ns);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        if (ms < 0 || ns < 0 || ns > 999999)
+            throw new IllegalArgumentException("Pause must be non-negative with 0-999999 nanoseconds, you have: " + ms + "ms " + ns + "ns");
+        FramePacer.sleep(ms*1_000_000L + ns);
     }
 
     //////////////////////////////////////////////////////////////////////////// WINDOW ATTRIBUTE SETTERS
@@ -521,9 +1224,15 @@ public class DConsole extends DCanvas {
 
     @Override
     public void dispose() {
+        if (this.resizeTimer != null) this.resizeTimer.stop();
+        synchronized (this) {
+            this.setPresentThread(false);
+            if (this.strategy != null) this.strategy.dispose();
+            this.strategy = null;
+            if (this.ownImages) this.images.unloadAll(); // shared images may still be used elsewhere
+        }
         super.dispose();
         this.frame.dispose();
-        this.images.unloadAll();
     }
 
     /**
@@ -538,6 +1247,7 @@ public class DConsole extends DCanvas {
         } else {
             this.preVisible = inUse;
         }
+        this.stateChanged();
     }
 
     /**
@@ -566,36 +1276,110 @@ public class DConsole extends DCanvas {
         this.frame.dispose();
         this.frame.setUndecorated(inUse);
         this.frame.setVisible(true);
+        this.createStrategy();
     }
 
     /**
      * Sets if the DConsole should be in exclusive full-screen mode.
+     * The display mode of the screen is kept.
      *
      * @param inUse if the DConsole should be in an exclusive full-screen view
+     *
+     * @see #setFullscreen(DisplayMode)
      */
 
     public void setFullscreen(boolean inUse) {
-        if (inUse && this.screen.getFullScreenWindow() != this.frame && this.screen.isFullScreenSupported()) {
-            this.fullscreen = true;
-            this.preSize = this.canvas.getSize();
-            this.preResize = this.frame.isResizable();
-            this.preVisible = this.frame.isVisible();
-            this.frame.dispose();
-            this.frame.setUndecorated(true);
-            this.frame.setResizable(false);
-            this.screen.setFullScreenWindow(this.frame);
-            this.canvas.requestFocus();
+        if (inUse) {
+            this.setFullscreen(null);
         } else if (this.screen.getFullScreenWindow() == this.frame) {
+            if (this.preMode != null && this.screen.isDisplayChangeSupported() && !this.preMode.equals(this.screen.getDisplayMode())) {
+                this.screen.setDisplayMode(this.preMode); // back to the desktop's resolution and refresh rate
+            }
+            this.preMode = null;
+            this.fullscreen = false;
             this.frame.dispose();
             this.frame.setUndecorated(this.undecorated);
             this.screen.setFullScreenWindow(null);
             this.canvas.setSize(this.preSize);
             this.frame.setResizable(this.preResize);
             this.frame.setVisible(this.preVisible);
+            this.createStrategy(); // back to the requested present mode
             this.canvas.requestFocus();
         }
     }
 
+    /**
+     * Puts the DConsole in exclusive full-screen mode, and switches the screen to a display mode.
+     * <p>
+     * While in full-screen mode, frames are presented by page flipping, which swaps whole frames in step with the screen's refresh and bypasses the desktop compositor.
+     * The present mode set by {@link #setPresentMode(int)} is used again, and the desktop's display mode restored, when leaving full-screen mode.
+     * If the screen cannot change display modes, full-screen mode is entered with the current one.
+     * If the screen does not support full-screen mode, no action is performed.
+     *
+     * @param mode one of {@link #getDisplayModes()}, or null to keep the current display mode
+     *
+     * @throws IllegalArgumentException if the display mode is not supported by the screen
+     */
+
+    public void setFullscreen(DisplayMode mode) {
+        if (mode != null && !Arrays.asList(this.screen.getDisplayModes()).contains(mode)) {
+            throw new IllegalArgumentException("Display mode must be one of getDisplayModes(), you have: "
+                + mode.getWidth() + "x" + mode.getHeight() + " at " + mode.getRefreshRate() + "Hz");
+        }
+        if (!this.screen.isFullScreenSupported()) return;
+
+        if (this.screen.getFullScreenWindow() != this.frame) {
+            this.fullscreen = true;
+            this.preSize = this.canvas.getSize();
+            this.preResize = this.frame.isResizable();
+            this.preVisible = this.frame.isVisible();
+            this.frame.dispose();
+            this.frame.setUndecorated(true);
+            this.frame.setResizable(false);
+            this.screen.setFullScreenWindow(this.frame);
+        }
+
+        if (mode != null && this.screen.isDisplayChangeSupported() && !mode.equals(this.screen.getDisplayMode())) { // only while exclusive
+            if (this.preMode == null) this.preMode = this.screen.getDisplayMode();
+            this.screen.setDisplayMode(mode);
+        }
+
+        this.createStrategy(); // page flipping while full-screen
+        this.canvas.requestFocus();
+    }
+
+    /**
+     * Returns the display modes the screen of the DConsole supports.
+     *
+     * @return the supported resolutions, bit depths and refresh rates
+     *
+     * @see #setFullscreen(DisplayMode)
+     */
+
+    public DisplayMode[] getDisplayModes() {
+        return this.screen.getDisplayModes();
+    }
+
+    /**
+     * Returns the display mode the screen of the DConsole is in.
+     *
+     * @return the current resolution, bit depth and refresh rate
+     */
+
+    public DisplayMode getDisplayMode() {
+        return this.screen.getDisplayMode();
+    }
+
+    /**
+     * Checks if the DConsole is in exclusive full-screen mode.
+     *
+     * @return if the DConsole is full-screen
+     */
+
+    public boolean isFullscreen() {
+        return this.fullscreen;
+    }
+
     /**
      * Checks if a number of keys are simultaneously pressed.
      *
@@ -617,9 +1401,8 @@ public class DConsole extends DCanvas {
      */
 
     public boolean isKeyPressed(char... key) {
-        int[] k = new int[key.length];
-        for (int i = 0; i < k.length; i++) k[i] = KeyEvent.getExtendedKeyCodeForChar(key[i]);
-        return this.key.isKey(k);
+        for (char c: key) if (!this.key.isKey(KeyEvent.getExtendedKeyCodeForChar(c))) return false;
+        return true;
     }
 
     /**
@@ -647,15 +1430,30 @@ public class DConsole extends DCanvas {
     }
 
     /**
-     * Returns a list of all keys currently pressed, in the order they were pressed.
+     * Returns a list of all keys currently pressed, in order of key code.
      *
      * @return all keys currently pressed
+     *
+     * @see #getKeys(int[])
      */
 
     public int[] getKeys() {
         return this.key.getKeys();
     }
 
+    /**
+     * Copies the keys currently pressed into an array, in order of key code, without making a new array.
+     * If more keys are pressed than fit, the array is filled and the rest are left out.
+     *
+     * @param keys the array to copy the key codes into
+     *
+     * @return the number of keys pressed, which may be more than the length of the array
+     */
+
+    public int getKeys(int[] keys) {
+        return this.key.getKeys(keys);
+    }
+
     /**
      * Clears the list of keys currently pressed.
      */
@@ -664,6 +1462,99 @@ public class DConsole extends DCanvas {
         this.key.clearKeys();
     }
 
+    /**
+     * Returns the keyboard and mouse as they were when the DConsole was last redrawn.
+     * Every call returns the same state until the next redraw, so everything in a frame sees the same input.
+     *
+     * @return the latest input state
+     *
+     * @see #latchInput()
+     */
+
+    public InputState getInput() {
+        return this.current;
+    }
+
+    /**
+     * Takes a new input state, as {@link #redraw()} does before every frame.
+     * Presses and releases since the last latch are seen by the new state only.
+     * Call this when input should be latched more often than frames are drawn, such as once per game tick.
+     *
+     * @return the new input state
+     */
+
+    public InputState latchInput() {
+        synchronized (this.input) {
+            final InputState next = (this.current == this.input[0])? this.input[1]: this.input[0];
+            this.key.latch(next, ++this.inputFrame);
+            this.current = next;
+            return next;
+        }
+    }
+
+    /**
+     * Starts recording every key and mouse event into a new queue, which another thread can drain at its own pace.
+     * Event listeners are still called as well.
+     *
+     * @param capacity the number of events the queue holds before dropping new ones, rounded up to a power of two
+     *
+     * @return the new queue, which replaces any earlier one
+     *
+     * @throws IllegalArgumentException if {@code capacity < 1} or {@code capacity > 2^24}
+     */
+
+    public InputQueue enableInputQueue(int capacity) {
+        final InputQueue q = new InputQueue(capacity);
+        this.queue = q;
+        return q;
+    }
+
+    /**
+     * Stops recording events into the input queue.
+     */
+
+    public void disableInputQueue() {
+        this.queue = null;
+    }
+
+    /**
+     * Returns the queue input events are recorded into.
+     *
+     * @return the input queue, or null if not enabled
+     */
+
+    public InputQueue getInputQueue() {
+        return this.queue;
+    }
+
+    /**
+     * Returns how far the mouse moved since the last call, in CURSOR_RELATIVE mode.
+     * Movement is measured in window pixels, and is not limited by the edges of the window.
+     *
+     * @return the movement of the mouse since the last call
+     *
+     * @see #getMouseDelta(Point)
+     */
+
+    public Point getMouseDelta() {
+        return this.getMouseDelta(new Point());
+    }
+
+    /**
+     * Returns how far the mouse moved since the last call, in CURSOR_RELATIVE mode, without making a new Point.
+     * Movement is measured in window pixels, and is not limited by the edges of the window.
+     *
+     * @param delta the point to store the movement in
+     *
+     * @return the point passed in, holding the movement of the mouse since the last call
+     */
+
+    public Point getMouseDelta(Point delta) {
+        this.mouse.takeDelta(delta);
+        if (this.plane == DConsole.PLANE_CARTESIAN) delta.y = -delta.y;
+        return delta;
+    }
+
     /**
      * Returns a Point representation of where the mouse cursor currently is over the DConsole.
      *
@@ -737,7 +1628,7 @@ public class DConsole extends DCanvas {
     }
 
     /**
-     * Returns a list of all mouse buttons currently pressed, in the order they were pressed.
+     * Returns a list of all mouse buttons currently pressed, in order of button number.
      *
      * @return all mouse buttons currently pressed
      */
@@ -765,14 +1656,22 @@ public class DConsole extends DCanvas {
         case CURSOR_NORMAL:
             setMouseVisibility(true);
             setMouseLock(false);
+            this.mouse.setRelative(false);
             break;
         case CURSOR_HIDDEN:
             setMouseVisibility(false);
             setMouseLock(false);
+            this.mouse.setRelative(false);
             break;
         case CURSOR_DISABLED:
             setMouseVisibility(false);
             setMouseLock(true);
+            this.mouse.setRelative(false);
+            break;
+        case CURSOR_RELATIVE:
+            setMouseVisibility(false);
+            setMouseLock(false);
+            this.mouse.setRelative(true);
             break;
         }
     }
@@ -781,7 +1680,7 @@ public class DConsole extends DCanvas {
         if (visible) {
             this.canvas.setCursor(Cursor.getDefaultCursor());
         } else {
-            this.canvas.setCursor(this.blank);
+            this.canvas.setCursor(Shared.BLANK);
         }
     }
 
@@ -792,14 +1691,16 @@ public class DConsole extends DCanvas {
 
     private Rectangle mouseLock(Point old) {
         Point position = this.canvas.getLocationOnScreen();
-        Dimension size = new Dimension(this.getWidth(), this.getHeight());
+        Dimension size = this.canvas.getSize(); // window space, even with a logical size
         position.translate(size.width/2, size.height/2);
-        this.robot.mouseMove(position.x, position.y);
+        Shared.ROBOT.mouseMove(position.x, position.y);
         return new Rectangle(old.x-size.width/2, old.y-size.height/2, size.width, size.height);
     }
 
     /**
      * Adds the specified event listener to receive events from this console.
+     * Only the methods the listener overrides are called.
+     * Listeners may be added at any time, even while an event is being sent, and receive events from the next one on.
      * If listener adapter is null, no exception is thrown and no action is performed.
      *
      * @param adapter the event listener to add
@@ -809,20 +1710,34 @@ public class DConsole extends DCanvas {
         if (adapter != null) this.event.add(adapter);
     }
 
+    /**
+     * Adds a listener for one kind of event from this console, such as a lambda.
+     * Listeners may be added at any time, even while an event is being sent, and receive events from the next one on.
+     * If listener is null, no exception is thrown and no action is performed.
+     *
+     * @param <T>      the class of the event
+     * @param type     the kind of event to listen for, such as {@link EventType#MOUSE_MOVED}
+     * @param listener given each event of that kind
+     */
+
+    public <T> void addEventListener(EventType<T> type, Consumer<? super T> listener) {
+        if (listener != null) this.event.add(type, listener);
+    }
+
     /**
      * Returns all EventListeners currently registered with the DConsole, in the order they were added and are executed.
+     * Listeners for one kind of event are not included.
      *
      * @return all event listeners registered to the DConsole, in the order they are executed
      */
 
     public EventAdapter[] getEventListeners() {
-        EventAdapter[] r = new EventAdapter[event.size()];
-        this.event.toArray(r);
-        return r;
+        return this.event.getAdapters();
     }
 
     /**
      * Removes the specified EventListener from the DConsole.
+     * It may still receive an event that was being sent while it was removed.
      *
      * @param adapter the event listener to remove
      */
@@ -831,6 +1746,20 @@ public class DConsole extends DCanvas {
         if (adapter != null) this.event.remove(adapter);
     }
 
+    /**
+     * Removes a listener for one kind of event from the DConsole.
+     * It must be the same object that was added, so a lambda must be kept to be removed.
+     * If the listener was not added, no action is performed.
+     *
+     * @param <T>      the class of the event
+     * @param type     the kind of event it listens for
+     * @param listener the listener to remove
+     */
+
+    public <T> void removeEventListener(EventType<T> type, Consumer<? super T> listener) {
+        if (listener != null) this.event.remove(type, listener);
+    }
+
     /**
      * Registers a font file with the graphics environment.
      *
@@ -864,10 +1793,92 @@ public class DConsole extends DCanvas {
         return null;
     }
 
+    private class Presenter extends Thread { // triple buffering: one drawn on, one ready, one shown, any spare is free
+        private VolatileImage ready;   // latest finished frame, not yet shown
+        private VolatileImage showing; // frame being shown
+        private VolatileImage free;    // handed out next when no frame is waiting
+        private int           readyWidth;
+        private int           readyHeight;
+        private int           showingWidth;  // 0 until a frame is shown
+        private int           showingHeight;
+        private boolean       running;
+
+        public Presenter(VolatileImage showing, VolatileImage free) {
+            super("DConsole Presenter");
+            this.setDaemon(true);
+            this.showing = showing;
+            this.free = free;
+            this.running = true;
+        }
+
+        public synchronized VolatileImage handoff(VolatileImage finished, int width, int height) { // returns the buffer to draw on next
+            VolatileImage next;
+            if (this.ready != null) { // previous frame was never shown, reuse it
+                next = this.ready;
+            } else {
+                next = this.free;
+                this.free = null;
+            }
+            this.ready = finished;
+            this.readyWidth = width;
+            this.readyHeight = height;
+            this.notifyAll();
+            return next;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final VolatileImage frame;
+                final int width, height;
+                synchronized (this) {
+                    while (this.ready == null && this.running) {
+                        try {
+                            this.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (!this.running) return;
+                    this.free = this.showing;
+                    this.showing = this.ready;
+                    this.ready = null;
+                    frame = this.showing;
+                    width = this.showingWidth = this.readyWidth;
+                    height = this.showingHeight = this.readyHeight;
+                }
+                DConsole.this.present(frame, width, height);
+            }
+        }
+
+        public synchronized BufferedImage snapshot() { // latest finished frame, or null if none was handed over yet
+            if (this.ready != null) return this.ready.getSnapshot().getSubimage(0, 0, this.readyWidth, this.readyHeight);
+            if (this.showingWidth == 0) return null;
+            return this.showing.getSnapshot().getSubimage(0, 0, this.showingWidth, this.showingHeight);
+        }
+
+        public void finish() { // stops presenting, and releases the buffers not drawn on
+            synchronized (this) {
+                this.running = false;
+                this.notifyAll();
+            }
+            try {
+                this.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (this.ready != null) this.ready.flush();
+                if (this.showing != null) this.showing.flush();
+                if (this.free != null) this.free.flush();
+            }
+        }
+    }
+
     private class ExceptionList implements Thread.UncaughtExceptionHandler {
         @Override
         public void uncaughtException(Thread t, Throwable e) {
-            for (EventAdapter i: DConsole.this.event) i.uncaughtException(); // notify that closing (for clean-up)
+            DConsole.this.event.fire(EventType.UNCAUGHT_EXCEPTION, e); // notify that closing (for clean-up)
 
             e.printStackTrace(); // basically handle by not handling and closing with a fail status
             System.exit(1);
@@ -875,9 +1886,22 @@ public class DConsole extends DCanvas {
     }
 
     private class WindowList extends WindowAdapter {
+        @Override
+        public void windowIconified(WindowEvent e) {
+            DConsole.this.iconified = true;
+            DConsole.this.stateChanged();
+        }
+
+        @Override
+        public void windowDeiconified(WindowEvent e) {
+            DConsole.this.iconified = false;
+            DConsole.this.stateChanged();
+            DConsole.this.invalidate();
+        }
+
         @Override
         public void windowClosing(WindowEvent e) {
-            for (EventAdapter i: DConsole.this.event) i.windowClosing(e); // notify that closing
+            DConsole.this.event.fire(EventType.WINDOW_CLOSING, e); // notify that closing
 
             switch(DConsole.this.close) { // mimic what swing does
             case DConsole.ON_CLOSE_DO_NOTHING:
@@ -897,9 +1921,19 @@ public class DConsole extends DCanvas {
 
     private class ComponentList extends ComponentAdapter {
         @Override
-        public void componentResized(ComponentEvent e) {
-            DConsole.this.fix(); // make drawing surface ready again
-            for (EventAdapter i: DConsole.this.event) i.componentResized(e); // notify that screen size changed
+        public void componentResized(ComponentEvent e) { // always on the event thread, like the timer
+            DConsole.this.resized = true; // drawing surface is fixed by the next redraw, or once resizing settles
+            if (DConsole.this.resizeTimer == null) {
+                final Timer t = new Timer(DConsole.RESIZE_SETTLE_MS, a -> {
+                    if (DConsole.this.resized) DConsole.this.fix();
+                    DConsole.this.canvas.repaint();
+                });
+                t.setRepeats(false);
+                DConsole.this.resizeTimer = t;
+            }
+            DConsole.this.resizeTimer.restart(); // every resize pushes the settle back
+            DConsole.this.invalidate();
+            DConsole.this.event.fire(EventType.COMPONENT_RESIZED, e); // notify that screen size changed
         }
     }
 
@@ -911,86 +1945,85 @@ public class DConsole extends DCanvas {
         @Override
         public void focusLost(FocusEvent e) {
             DConsole.this.lockFocus = false;
+            DConsole.this.focused = false;
+            DConsole.this.stateChanged();
             DConsole.this.mouse.setMouseLock(false);
-            for (EventAdapter i: DConsole.this.event) i.focusLost(e); // notify that focus changed
+            DConsole.this.event.fire(EventType.FOCUS_LOST, e); // notify that focus changed
         }
 
         @Override
         public void focusGained(FocusEvent e) {
             DConsole.this.lockFocus = true;
+            DConsole.this.focused = true;
+            DConsole.this.stateChanged();
             DConsole.this.mouse.setMouseLock(DConsole.this.lock);
-            for (EventAdapter i: DConsole.this.event) i.focusGained(e); // notify that focus changed
+            DConsole.this.event.fire(EventType.FOCUS_GAINED, e); // notify that focus changed
         }
     }
 
     private class KeyList extends KeyAdapter {
-        private ArrayList<KeyData> k = new ArrayList<>();
+        private final AtomicBitSet d = new AtomicBitSet(0x10000); // keys held down, all VK_ codes fit
+        private final AtomicBitSet k = new AtomicBitSet(0x10000); // held keys not yet taken by getKey or clearKeys
+        private final AtomicBitSet p = new AtomicBitSet(0x10000); // went down since the last latch
+        private final AtomicBitSet r = new AtomicBitSet(0x10000); // went up since the last latch
         @Override
         public void keyTyped(KeyEvent e) {
-            for (EventAdapter i: DConsole.this.event) i.keyTyped(e);
+            final InputQueue q = DConsole.this.queue;
+            if (q != null) q.offer(e);
+            DConsole.this.invalidate();
+            DConsole.this.event.fire(EventType.KEY_TYPED, e);
         }
         @Override
         public void keyPressed(KeyEvent e) {
-            KeyData temp = new KeyData(e.getKeyCode());
-            if (!this.k.contains(temp)) this.k.add(temp);
-            for (EventAdapter i: DConsole.this.event) i.keyPressed(e);
+            final InputQueue q = DConsole.this.queue;
+            if (q != null) q.offer(e);
+            if (this.d.add(e.getKeyCode())) { // repeats while held do not count again
+                this.k.add(e.getKeyCode());
+                this.p.add(e.getKeyCode());
+            }
+            DConsole.this.invalidate();
+            DConsole.this.event.fire(EventType.KEY_PRESSED, e);
         }
         @Override
         public void keyReleased(KeyEvent e) {
-            KeyData temp = new KeyData(e.getKeyCode());
-            if (this.k.contains(temp)) this.k.remove(temp);
-            for (EventAdapter i: DConsole.this.event) i.keyReleased(e);
-        }
-        class KeyData {
-            public final int keycode;
-            public boolean active;
-            public KeyData(int keycode) {
-                this.keycode = keycode;
-                this.active = true;
-            }
-            @Override
-            public String toString() {
-                return "[" + keycode + ((active)?'+':'-') + "]";
-            }
-            @Override
-            public boolean equals(Object o) {
-                if (o == null) return false;
-                if (o == this) return true;
-                return (this.keycode == ((KeyData)o).keycode);
-            }
-            @Override
-            public int hashCode() {
-                return this.keycode;
-            }
+            final InputQueue q = DConsole.this.queue;
+            if (q != null) q.offer(e);
+            if (this.d.remove(e.getKeyCode())) this.r.add(e.getKeyCode());
+            this.k.remove(e.getKeyCode());
+            DConsole.this.invalidate();
+            DConsole.this.event.fire(EventType.KEY_RELEASED, e);
+        }
+        public void latch(InputState s, long frame) {
+            final MouseList m = DConsole.this.mouse;
+            s.latch(frame, this.d, this.p, this.r, m.h, m.bp, m.br, m.getMouseXPosition(), m.getMouseYPosition(), m.ws.sumThenReset());
+        }
+        public boolean isKey(int k) {
+            return this.k.contains(k);
         }
         public boolean isKey(int[] k) {
-            for (int i: k) {
-                int t = this.k.indexOf(new KeyData(i));
-                if (t == -1 || this.k.get(t).active == false) return false;
-            }
+            for (int i: k) if (!this.k.contains(i)) return false;
             return true;
         }
         public boolean getKey(int k) {
-            int t = this.k.indexOf(new KeyData(k));
-            if (t == -1 || this.k.get(t).active == false) return false;
-            this.k.get(t).active = false;
-            return true;
+            return this.k.remove(k);
         }
         public int[] getKeys() {
-            int l = 0;
-            int i = 0;
-            for (KeyData k: this.k) if (k.active == true) l++;
-            int[] r = new int[l];
-            for (KeyData k: this.k) if (k.active == true) r[i++] = k.keycode;
-            return r;
+            return this.k.toArray();
+        }
+        public int getKeys(int[] r) {
+            return this.k.copyInto(r);
         }
         public void clearKeys() {
-            for (KeyData k: this.k) k.active = false;
+            this.k.clear();
         }
     }
 
     private class MouseList extends MouseAdapter {
-        private ArrayList<Integer> b = new ArrayList<>();
+        private final AtomicBitSet b = new AtomicBitSet(64); // held buttons not yet taken by getMouseButton
+        private final AtomicBitSet h = new AtomicBitSet(64); // held buttons
+        private final AtomicBitSet bp = new AtomicBitSet(64); // went down since the last latch
+        private final AtomicBitSet br = new AtomicBitSet(64); // went up since the last latch
+        private final DoubleAdder  ws = new DoubleAdder();   // wheel turned since the last latch
         private double s;
         private int l;
         Point p = new Point(0,0);
@@ -998,39 +2031,47 @@ public class DConsole extends DCanvas {
         @Override
         public void mouseClicked(MouseEvent e) {
             this.mouseMove(e);
-            for (EventAdapter i: DConsole.this.event) i.mouseClicked(e);
+            DConsole.this.event.fire(EventType.MOUSE_CLICKED, e);
         }
         @Override
         public void mousePressed(MouseEvent e) {
             this.mouseMove(e);
-            Integer temp = Integer.valueOf(e.getButton());
-            if (!this.b.contains(temp)) this.b.add(temp);
-            for (EventAdapter i: DConsole.this.event) i.mousePressed(e);
+            this.b.add(e.getButton());
+            if (this.h.add(e.getButton())) this.bp.add(e.getButton());
+            DConsole.this.event.fire(EventType.MOUSE_PRESSED, e);
         }
         @Override
         public void mouseReleased(MouseEvent e) {
             this.mouseMove(e);
-            Integer temp = Integer.valueOf(e.getButton());
-            if (this.b.contains(temp)) this.b.remove(temp);
-            for (EventAdapter i: DConsole.this.event) i.mouseReleased(e);
+            this.b.remove(e.getButton());
+            if (this.h.remove(e.getButton())) this.br.add(e.getButton());
+            DConsole.this.event.fire(EventType.MOUSE_RELEASED, e);
         }
         @Override
         public void mouseDragged(MouseEvent e) {
             this.mouseMove(e);
-            for (EventAdapter i: DConsole.this.event) i.mouseDragged(e);
+            DConsole.this.event.fire(EventType.MOUSE_DRAGGED, e);
         }
         @Override
         public void mouseMoved(MouseEvent e) {
             this.mouseMove(e);
-            for (EventAdapter i: DConsole.this.event) i.mouseMoved(e);
+            DConsole.this.event.fire(EventType.MOUSE_MOVED, e);
         }
         @Override
         public void mouseWheelMoved(MouseWheelEvent e) {
             this.mouseMove(e);
             this.s += e.getPreciseWheelRotation();
-            for (EventAdapter i: DConsole.this.event) i.mouseWheelMoved(e);
+            this.ws.add(e.getPreciseWheelRotation());
+            DConsole.this.event.fire(EventType.MOUSE_WHEEL_MOVED, e);
         }
-        private void mouseMove(MouseEvent e) {
+        private void mouseMove(MouseEvent e) { // first thing every mouse event does
+            final InputQueue q = DConsole.this.queue;
+            if (q != null) q.offer(e);
+            if (this.v) {
+                this.relativeMove(e);
+                return;
+            }
+            if (this.l == 0 || !this.r.equals(e.getPoint())) DConsole.this.invalidate(); // re-centring the locked cursor is not input
             if (this.l != 0) {
                 if (this.r.equals(e.getPoint())) return;
                 Rectangle t = DConsole.this.mouseLock(e.getPoint());
@@ -1046,19 +2087,20 @@ public class DConsole extends DCanvas {
 
         }
         public Point getMousePosition() {
-            Point r = new Point(this.p);
+            Point r = DConsole.this.toLogical(this.p);
             if (DConsole.this.plane == DConsole.PLANE_CARTESIAN) {
                 r.setLocation(r.x, DConsole.this.getHeight()-r.y);
             }
             return r;
         }
         public int getMouseXPosition() {
-            return this.p.x;
+            return DConsole.this.toLogical(this.p).x;
         }
         public int getMouseYPosition() {
+            int y = DConsole.this.toLogical(this.p).y;
             if (DConsole.this.plane == DConsole.PLANE_CARTESIAN)
-                return DConsole.this.getHeight()-p.y;
-            return this.p.y;
+                return DConsole.this.getHeight()-y;
+            return y;
         }
         public double getScrollPosition() {
             return this.s;
@@ -1067,22 +2109,14 @@ public class DConsole extends DCanvas {
             this.s = 0;
         }
         public boolean isMouseButton(int[] b) {
-            for (int i: b) {
-                if (this.b.indexOf(Integer.valueOf(i)) == -1) return false;
-            }
+            for (int i: b) if (!this.b.contains(i)) return false;
             return true;
         }
         public boolean getMouseButton(int b) {
-            boolean r = false;
-            int t = this.b.indexOf(Integer.valueOf(b));
-            if (t == -1) return false;
-            this.b.remove(t);
-            return true;
+            return this.b.remove(b);
         }
         public int[] getMouseButtons() {
-            int[] r = new int[this.b.size()];
-            for (int i = 0; i < r.length; i++) r[i] = this.b.get(i);
-            return r;
+            return this.b.toArray();
         }
         public void clearMouseButtons() {
             this.b.clear();
@@ -1090,5 +2124,61 @@ public class DConsole extends DCanvas {
         public void setMouseLock(boolean b) {
             this.l = b?1:0;
         }
+        private volatile boolean v;                    // relative mode
+        private final AtomicLong d = new AtomicLong(); // movement not yet read, x in the high half and y in the low half
+        private int     ax, ay;                        // where the cursor was last seen
+        private boolean a;                             // ax and ay are set
+        private int     wx, wy;                        // where the cursor was sent, if w
+        private boolean w;                             // cursor was re-centred, its event has not arrived yet
+        private long    wt;                            // when the cursor was re-centred
+        private void relativeMove(MouseEvent e) { // runs for every event, so nothing is allocated
+            final int x = e.getX();
+            final int y = e.getY();
+            this.p.setLocation(x, y);
+            if (!DConsole.this.lockFocus) { // not measured without focus, the cursor may be anywhere when it returns
+                this.a = false;
+                this.w = false;
+                return;
+            }
+            if (this.w && e.getWhen() - this.wt > 250) this.w = false; // re-centring was lost
+
+            int bx = this.ax;
+            int by = this.ay;
+            if (this.w && Math.abs(x - this.wx) + Math.abs(y - this.wy) < Math.abs(x - bx) + Math.abs(y - by)) {
+                bx = this.wx; // first event after re-centring, older events still measure from before
+                by = this.wy;
+                this.w = false;
+            }
+            if (this.a && (x != bx || y != by)) {
+                this.d.getAndAdd(((long)(x - bx) << 32) + (y - by));
+                DConsole.this.invalidate();
+            }
+            this.ax = x;
+            this.ay = y;
+            this.a = true;
+
+            if (this.w) return;
+            final int cw = DConsole.this.canvas.getWidth();
+            final int ch = DConsole.this.canvas.getHeight();
+            final int m = Math.min(cw, ch)/4;
+            if (x < m || y < m || x >= cw - m || y >= ch - m) { // near an edge, the only time the cursor is moved
+                this.wx = cw/2;
+                this.wy = ch/2;
+                this.w = true;
+                this.wt = e.getWhen();
+                Shared.ROBOT.mouseMove(e.getXOnScreen() - x + this.wx, e.getYOnScreen() - y + this.wy);
+            }
+        }
+        public void takeDelta(Point r) {
+            final long t = this.d.getAndSet(0);
+            r.y = (int)t;
+            r.x = (int)((t - r.y) >> 32);
+        }
+        public void setRelative(boolean b) {
+            this.v = b;
+            this.a = false;
+            this.w = false;
+            this.d.set(0);
+        }
     }
 }
@@ -0,0 +1,107 @@
+package DLibX;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Listeners of a DConsole, kept as one array for each kind of event.
+ * <p>
+ * The arrays are never changed once published: adding or removing a listener copies them under a lock and swaps them in.
+ * Sending an event reads the current array without locking, so listeners may be added or removed at any time, even by a listener, and take effect from the next event.
+ * A kind of event nobody listens to costs one read of an empty array.
+ * <p>
+ * An EventAdapter is listed only under the methods it overrides.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+class EventListeners {
+    private static final Consumer<?>[]  NONE     = new Consumer<?>[0];
+    private static final EventAdapter[] ADAPTERS = new EventAdapter[0];
+
+    private volatile Consumer<?>[][]    table;    // by type index
+    private volatile EventAdapter[]     adapters; // in the order they were added
+
+    EventListeners() {
+        this.table = new Consumer<?>[EventType.COUNT][];
+        Arrays.fill(this.table, EventListeners.NONE);
+        this.adapters = EventListeners.ADAPTERS;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void fire(EventType<T> type, T e) {
+        final Consumer<?>[] l = this.table[type.index];
+        for (int i = 0; i < l.length; i++) ((Consumer<? super T>)l[i]).accept(e); // usually none
+    }
+
+    synchronized <T> void add(EventType<T> type, Consumer<? super T> listener) {
+        final Consumer<?>[][] t = this.table.clone();
+        t[type.index] = EventListeners.with(t[type.index], listener);
+        this.table = t;
+    }
+
+    synchronized <T> void remove(EventType<T> type, Consumer<? super T> listener) {
+        final Consumer<?>[][] t = this.table.clone();
+        final int i = Arrays.asList(t[type.index]).indexOf(listener);
+        if (i < 0) return;
+        t[type.index] = EventListeners.without(t[type.index], i);
+        this.table = t;
+    }
+
+    synchronized void add(EventAdapter adapter) {
+        final Consumer<?>[][] t = this.table.clone();
+        for (EventType<?> type: EventType.values()) {
+            if (type.isOverridden(adapter)) t[type.index] = EventListeners.with(t[type.index], new Adapted<>(type, adapter));
+        }
+        this.adapters = EventListeners.with(this.adapters, adapter);
+        this.table = t;
+    }
+
+    synchronized void remove(EventAdapter adapter) {
+        final int a = Arrays.asList(this.adapters).indexOf(adapter);
+        if (a < 0) return;
+        final Consumer<?>[][] t = this.table.clone();
+        for (int j = 0; j < t.length; j++) {
+            for (int i = 0; i < t[j].length; i++) {
+                if (t[j][i] instanceof Adapted && ((Adapted<?>)t[j][i]).a == adapter) { // first, as with the adapters
+                    t[j] = EventListeners.without(t[j], i);
+                    break;
+                }
+            }
+        }
+        this.adapters = EventListeners.without(this.adapters, a);
+        this.table = t;
+    }
+
+    EventAdapter[] getAdapters() {
+        return this.adapters.clone();
+    }
+
+    private static <E> E[] with(E[] array, E e) {
+        final E[] r = Arrays.copyOf(array, array.length + 1);
+        r[array.length] = e;
+        return r;
+    }
+
+    private static <E> E[] without(E[] array, int i) {
+        final E[] r = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, i + 1, r, i, r.length - i);
+        return r;
+    }
+
+    private static class Adapted<T> implements Consumer<T> { // one method of an EventAdapter
+        final EventType<T>  t;
+        final EventAdapter  a;
+
+        Adapted(EventType<T> t, EventAdapter a) {
+            this.t = t;
+            this.a = a;
+        }
+
+        @Override
+        public void accept(T e) {
+            this.t.call(this.a, e);
+        }
+    }
+}
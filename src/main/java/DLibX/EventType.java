@@ -0,0 +1,129 @@
+package DLibX;
+
+import java.awt.event.ComponentEvent;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowEvent;
+import java.util.function.BiConsumer;
+
+/**
+ * A kind of event a DConsole sends to its listeners, one for each method of {@link EventAdapter}.
+ * <p>
+ * A listener for a single kind of event can be a lambda, and is given the event already as the right class.
+ * <pre>
+ * console.addEventListener(EventType.MOUSE_MOVED, e -&gt; System.out.println(e.getX()));
+ * </pre>
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ *
+ * @param <T> the class of the event listeners are given
+ *
+ * @see DConsole#addEventListener(EventType, java.util.function.Consumer)
+ */
+
+public final class EventType<T> {
+    /**
+     * The DConsole's close button is pressed.
+     */
+    public static final EventType<WindowEvent>     WINDOW_CLOSING     = new EventType<>(0, "windowClosing", WindowEvent.class, EventAdapter::windowClosing);
+    /**
+     * The DConsole is resized.
+     */
+    public static final EventType<ComponentEvent>  COMPONENT_RESIZED  = new EventType<>(1, "componentResized", ComponentEvent.class, EventAdapter::componentResized);
+    /**
+     * The DConsole gains keyboard focus.
+     */
+    public static final EventType<FocusEvent>      FOCUS_GAINED       = new EventType<>(2, "focusGained", FocusEvent.class, EventAdapter::focusGained);
+    /**
+     * The DConsole looses keyboard focus.
+     */
+    public static final EventType<FocusEvent>      FOCUS_LOST         = new EventType<>(3, "focusLost", FocusEvent.class, EventAdapter::focusLost);
+    /**
+     * A key is pressed on the DConsole.
+     */
+    public static final EventType<KeyEvent>        KEY_PRESSED        = new EventType<>(4, "keyPressed", KeyEvent.class, EventAdapter::keyPressed);
+    /**
+     * A key is released on the DConsole.
+     */
+    public static final EventType<KeyEvent>        KEY_RELEASED       = new EventType<>(5, "keyReleased", KeyEvent.class, EventAdapter::keyReleased);
+    /**
+     * A key is typed on the DConsole.
+     */
+    public static final EventType<KeyEvent>        KEY_TYPED          = new EventType<>(6, "keyTyped", KeyEvent.class, EventAdapter::keyTyped);
+    /**
+     * A mouse button is clicked on the DConsole.
+     */
+    public static final EventType<MouseEvent>      MOUSE_CLICKED      = new EventType<>(7, "mouseClicked", MouseEvent.class, EventAdapter::mouseClicked);
+    /**
+     * A mouse button is pressed on the DConsole.
+     */
+    public static final EventType<MouseEvent>      MOUSE_PRESSED      = new EventType<>(8, "mousePressed", MouseEvent.class, EventAdapter::mousePressed);
+    /**
+     * A mouse button is released on the DConsole.
+     */
+    public static final EventType<MouseEvent>      MOUSE_RELEASED     = new EventType<>(9, "mouseReleased", MouseEvent.class, EventAdapter::mouseReleased);
+    /**
+     * The mouse is dragged over the DConsole.
+     */
+    public static final EventType<MouseEvent>      MOUSE_DRAGGED      = new EventType<>(10, "mouseDragged", MouseEvent.class, EventAdapter::mouseDragged);
+    /**
+     * The mouse is moved over the DConsole.
+     */
+    public static final EventType<MouseEvent>      MOUSE_MOVED        = new EventType<>(11, "mouseMoved", MouseEvent.class, EventAdapter::mouseMoved);
+    /**
+     * The mouse wheel is turned over the DConsole.
+     */
+    public static final EventType<MouseWheelEvent> MOUSE_WHEEL_MOVED  = new EventType<>(12, "mouseWheelMoved", MouseWheelEvent.class, EventAdapter::mouseWheelMoved);
+    /**
+     * The DConsole is closing due to an uncaught exception, which listeners are given.
+     */
+    public static final EventType<Throwable>       UNCAUGHT_EXCEPTION = new EventType<>(13, "uncaughtException", null, (a, e) -> a.uncaughtException());
+
+    static final int COUNT = 14; // number of types, indices are below it
+
+    final int                                 index;
+    private final String                      name;
+    private final Class<?>                    param; // parameter of the adapter method, null for none
+    private final BiConsumer<EventAdapter, T> call;
+
+    private EventType(int index, String name, Class<?> param, BiConsumer<EventAdapter, T> call) {
+        this.index = index;
+        this.name = name;
+        this.param = param;
+        this.call = call;
+    }
+
+    void call(EventAdapter adapter, T e) {
+        this.call.accept(adapter, e);
+    }
+
+    boolean isOverridden(EventAdapter adapter) { // empty methods are not worth calling
+        try {
+            final Class<?>[] p = (this.param == null)? new Class<?>[0]: new Class<?>[] {this.param};
+            return adapter.getClass().getMethod(this.name, p).getDeclaringClass() != EventAdapter.class;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return true; // cannot tell, so call it anyway
+        }
+    }
+
+    static EventType<?>[] values() {
+        return new EventType<?>[] {
+            WINDOW_CLOSING, COMPONENT_RESIZED, FOCUS_GAINED, FOCUS_LOST, KEY_PRESSED, KEY_RELEASED, KEY_TYPED,
+            MOUSE_CLICKED, MOUSE_PRESSED, MOUSE_RELEASED, MOUSE_DRAGGED, MOUSE_MOVED, MOUSE_WHEEL_MOVED, UNCAUGHT_EXCEPTION
+        };
+    }
+
+    /**
+     * Returns the name of the EventAdapter method for this type.
+     *
+     * @return the name of the type
+     */
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,552 @@
+package DLibX;
+
+import DLibX.util.Fps;
+import DLibX.util.FramePacer;
+import DLibX.util.ResolutionScaler;
+
+import java.awt.event.FocusEvent;
+
+/**
+ * Runs a game at a fixed tick rate, and draws it as often as allowed.
+ * <p>
+ * {@link #update()} is called a fixed number of times per second no matter how fast frames are drawn, so game logic behaves the same on every machine.
+ * {@link #render(double)} is called once per frame with how far the game is between its last tick and the next one, which can be used to interpolate positions so motion is smooth at any frame rate.
+ * The DConsole is redrawn after every render.
+ * <p>
+ * When frames take too long the loop catches up with several ticks in a row, but never more than the catch-up limit per frame.
+ * Long stalls, such as a window being dragged or the program being suspended, are clamped to the maximum frame time so the game does not try to simulate all the time that was missed.
+ * By default, the loop pauses when the DConsole loses focus and resumes when it gains it back.
+ * The console's rate policy is followed as well, so hidden or unfocused consoles can draw fewer frames or none at all.
+ * The time spent updating, rendering, presenting and sleeping is measured every frame in nanoseconds.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public abstract class GameLoop implements Runnable {
+    protected final DConsole console;
+
+    private final Fps        fps;
+    private final FramePacer pacer;          // holds frames to the target rate
+    private volatile ResolutionScaler scaler; // adapts the render scale to frame time, may be null
+    private final Object     lock;           // waited on while paused
+    private final EventAdapter focus;        // pauses on focus loss, registered only while running
+
+    private volatile long    tickNanos;      // length of a tick
+    private volatile long    frameNanos;     // minimum length of a frame, 0 if uncapped
+    private volatile int     maxTicks;       // catch-up limit per frame
+    private volatile long    maxFrameNanos;  // longer frames are clamped to this
+    private volatile boolean pauseOnFocus;
+    private volatile boolean onDemand;       // frames only when the console needs redrawing
+
+    private volatile boolean running;
+    private volatile boolean paused;         // paused by the program
+    private volatile boolean unfocused;      // paused by focus loss
+    private Thread           thread;
+
+    private volatile long    updateTime;     // nanoseconds spent in each phase of the last frame
+    private volatile long    renderTime;
+    private volatile long    presentTime;
+    private volatile long    sleepTime;
+    private volatile long    frameTime;
+    private volatile long    droppedTime;    // total nanoseconds skipped by the catch-up limit and clamp
+    private volatile long    ticks;
+    private volatile long    frames;
+
+    /**
+     * Makes a game loop running at 60 ticks per second with an uncapped frame rate.
+     *
+     * @param console the console to draw on
+     */
+
+    public GameLoop(DConsole console) {
+        this(console, 60);
+    }
+
+    /**
+     * Makes a game loop with an uncapped frame rate.
+     *
+     * @param console  the console to draw on
+     * @param tickRate how many times {@link #update()} is called per second
+     *
+     * @throws IllegalArgumentException if {@code tickRate <= 0}
+     */
+
+    public GameLoop(DConsole console, double tickRate) {
+        this.console = console;
+        this.fps = new Fps(0.9);
+        this.pacer = new FramePacer(60);
+        this.lock = new Object();
+
+        this.setTickRate(tickRate);
+        this.frameNanos = 0;
+        this.maxTicks = 5;
+        this.maxFrameNanos = 250_000_000L;
+        this.pauseOnFocus = true;
+
+        this.focus = new EventAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                if (GameLoop.this.pauseOnFocus) GameLoop.this.unfocused = true;
+            }
+
+            @Override
+            public void focusGained(FocusEvent e) {
+                GameLoop.this.unfocused = false;
+                GameLoop.this.wake();
+            }
+        };
+    }
+
+    //////////////////////////////////////////////////////////////////////////// GAME
+
+    /**
+     * Advances the game by one tick.
+     * Called {@link #getTickRate()} times per second.
+     */
+
+    protected abstract void update();
+
+    /**
+     * Draws the game on the console.
+     * The console is redrawn once this returns.
+     *
+     * @param alpha 0.0 to 1.0 how far the game is between the last tick and the next one
+     */
+
+    protected abstract void render(double alpha);
+
+    /**
+     * Invoked on the loop's thread when the loop pauses, by the program or by losing focus.
+     * Does nothing by default.
+     */
+
+    protected void paused() {}
+
+    /**
+     * Invoked on the loop's thread when the loop resumes.
+     * Does nothing by default.
+     */
+
+    protected void resumed() {}
+
+    //////////////////////////////////////////////////////////////////////////// RUNNING
+
+    /**
+     * Runs the loop on the calling thread until {@link #stop()} is called.
+     */
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (this.thread != Thread.currentThread()) this.running = true; // start() already set it, and may have been stopped since
+        }
+        this.console.addEventListener(this.focus);
+        try {
+            this.loop();
+        } finally { // an ended loop must not be paused and woken by the console
+            this.console.removeEventListener(this.focus);
+            this.unfocused = false; // no longer followed, so a later run does not start paused
+            this.running = false;
+        }
+    }
+
+    private void loop() {
+        this.fps.reset();
+        this.pacer.reset();
+
+        long previous = System.nanoTime();
+        long accumulator = 0;
+
+        while (this.running) {
+            if (this.isPaused()) {
+                this.paused();
+                this.waitWhilePaused();
+                if (!this.running) break;
+                this.resumed();
+                this.fps.reset();
+                this.pacer.reset();
+                if (this.scaler != null) this.scaler.reset();
+                previous = System.nanoTime(); // time spent paused is not simulated
+                continue;
+            }
+
+            if (this.onDemand && this.console.awaitRedraw()) { // time spent idle is not simulated either
+                this.pacer.reset();
+                previous = System.nanoTime();
+            }
+            if (!this.running) break;
+
+            final long start = System.nanoTime();
+
+            long elapsed = start - previous;
+            previous = start;
+
+            if (elapsed > this.maxFrameNanos) { // spiral of death, drop what cannot be simulated
+                this.droppedTime += elapsed - this.maxFrameNanos;
+                elapsed = this.maxFrameNanos;
+            }
+            accumulator += elapsed;
+
+            final long tick = this.tickNanos;
+            int count = 0;
+            while (accumulator >= tick && count < this.maxTicks) {
+                this.update();
+                accumulator -= tick;
+                count++;
+            }
+            if (accumulator >= tick) { // catch-up limit reached, keep only the partial tick
+                this.droppedTime += accumulator - accumulator%tick;
+                accumulator %= tick;
+            }
+            this.ticks += count;
+
+            final long updated = System.nanoTime();
+            this.render((double)accumulator/tick);
+            final long rendered = System.nanoTime();
+            this.console.redraw();
+            final long presented = System.nanoTime();
+
+            long period = this.frameNanos;
+            if (this.console.getRatePolicy() == DConsole.RATE_REDUCED) period = Math.max(period, Math.round(1e9/this.console.getReducedRate()));
+            if (period > 0) {
+                if (period != this.pacer.getPeriod()) this.pacer.setPeriod(period);
+                this.pacer.sync();
+            }
+            final long end = System.nanoTime();
+
+            this.updateTime = updated - start;
+            this.renderTime = rendered - updated;
+            this.presentTime = presented - rendered;
+            this.sleepTime = end - presented;
+            this.frameTime = end - start;
+            this.frames++;
+            this.fps.update();
+
+            final ResolutionScaler s = this.scaler;
+            if (s != null) this.console.setRenderScale(s.update(end - start - this.sleepTime)); // waiting is not work
+        }
+    }
+
+    /**
+     * Runs the loop on a new thread.
+     *
+     * @throws IllegalStateException if the loop is already running
+     */
+
+    public synchronized void start() {
+        if (this.running) throw new IllegalStateException("Game loop is already running");
+        this.running = true; // set before the thread starts, so a stop straight after is not lost
+        this.thread = new Thread(this, "GameLoop");
+        this.thread.start();
+    }
+
+    /**
+     * Stops the loop once the current frame is finished.
+     * If the loop was started with {@link #start()}, this waits for its thread to end, unless called from that thread.
+     */
+
+    public void stop() {
+        this.running = false;
+        this.wake();
+        if (this.onDemand) this.console.invalidate(); // wakes a loop waiting for input
+
+        final Thread t;
+        synchronized (this) {
+            t = this.thread;
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Pauses or resumes the loop.
+     * While paused no ticks or frames are run, and the time spent paused is not simulated once resumed.
+     *
+     * @param inUse if the loop should be paused
+     */
+
+    public void setPaused(boolean inUse) {
+        this.paused = inUse;
+        if (!inUse) this.wake();
+    }
+
+    /**
+     * Checks if the loop is paused, by the program, by the console losing focus, or by the console's rate policy.
+     *
+     * @return if the loop is paused
+     *
+     * @see DConsole#setRatePolicy(int, int)
+     */
+
+    public boolean isPaused() {
+        return this.paused || this.unfocused || this.console.getRatePolicy() == DConsole.RATE_PAUSED;
+    }
+
+    /**
+     * Checks if the loop is running.
+     *
+     * @return if the loop is running
+     */
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    private void waitWhilePaused() {
+        synchronized (this.lock) {
+            while (this.running && this.isPaused()) {
+                try {
+                    this.lock.wait(this.paused || this.unfocused? 0: 100); // the rate policy is polled, as minimizing is not announced here
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.running = false;
+                }
+            }
+        }
+    }
+
+    private void wake() {
+        synchronized (this.lock) {
+            this.lock.notifyAll();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////// SETTERS
+
+    /**
+     * Sets how many times {@link #update()} is called per second.
+     *
+     * @param tickRate the number of ticks per second
+     *
+     * @throws IllegalArgumentException if {@code tickRate <= 0}
+     */
+
+    public void setTickRate(double tickRate) {
+        if (!(tickRate > 0)) throw new IllegalArgumentException("Tick rate must be positive, you have: " + tickRate);
+        this.tickNanos = Math.max(1, Math.round(1e9/tickRate));
+    }
+
+    /**
+     * Sets how many frames are drawn per second at most.
+     * A target of 0 draws frames as fast as possible.
+     *
+     * @param fps the maximum number of frames per second, or 0 for uncapped
+     *
+     * @throws IllegalArgumentException if {@code fps < 0}
+     */
+
+    public void setTargetFps(double fps) {
+        if (!(fps >= 0)) throw new IllegalArgumentException("Target fps may not be negative, you have: " + fps);
+        this.frameNanos = (fps == 0)? 0: Math.round(1e9/fps); // handed to the pacer by the loop
+    }
+
+    /**
+     * Sets how many ticks may be run in a single frame to catch up.
+     * Any further ticks that are due are skipped.
+     *
+     * @param ticks the maximum number of ticks per frame
+     *
+     * @throws IllegalArgumentException if {@code ticks < 1}
+     */
+
+    public void setMaxCatchUp(int ticks) {
+        if (ticks < 1) throw new IllegalArgumentException("Catch-up limit must be at least 1, you have: " + ticks);
+        this.maxTicks = ticks;
+    }
+
+    /**
+     * Sets the longest time a single frame may simulate.
+     * Longer frames, such as after a stall, only simulate this much time.
+     *
+     * @param nanos the maximum simulated time per frame in nanoseconds
+     *
+     * @throws IllegalArgumentException if {@code nanos < 1}
+     */
+
+    public void setMaxFrameTime(long nanos) {
+        if (nanos < 1) throw new IllegalArgumentException("Maximum frame time must be positive, you have: " + nanos);
+        this.maxFrameNanos = nanos;
+    }
+
+    /**
+     * Sets if the loop pauses while the console does not have focus.
+     *
+     * @param inUse if losing focus pauses the loop
+     */
+
+    public void setPauseOnFocusLoss(boolean inUse) {
+        this.pauseOnFocus = inUse;
+        if (!inUse) {
+            this.unfocused = false;
+            this.wake();
+        }
+    }
+
+    /**
+     * Sets if frames are only drawn when the console needs redrawing.
+     * <p>
+     * In on-demand mode the loop waits in {@link DConsole#awaitRedraw()} until input arrives, {@link DConsole#invalidate()} is called, or an animation is requested with {@link DConsole#requestAnimation(int)}.
+     * Ticks are only run while frames are being drawn, and the time spent waiting is not simulated.
+     * This keeps applications that are mostly idle, such as editors and tools, from using any processor time while nothing changes.
+     *
+     * @param inUse if frames are only drawn on demand
+     */
+
+    public void setOnDemand(boolean inUse) {
+        this.onDemand = inUse;
+        if (!inUse) this.console.invalidate(); // do not leave the loop waiting
+    }
+
+    /**
+     * Checks if frames are only drawn when the console needs redrawing.
+     *
+     * @return if frames are only drawn on demand
+     */
+
+    public boolean isOnDemand() {
+        return this.onDemand;
+    }
+
+    /**
+     * Sets a resolution scaler to adapt the console's render scale to how long frames take.
+     * The time spent waiting for the target frame rate is not counted.
+     * If the scaler is null, the render scale is left as it is.
+     *
+     * @param scaler the resolution scaler to use
+     *
+     * @see DConsole#setRenderScale(double)
+     */
+
+    public void setResolutionScaler(ResolutionScaler scaler) {
+        this.scaler = scaler;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// GETTERS
+
+    /**
+     * Returns how many times {@link #update()} is called per second.
+     *
+     * @return the number of ticks per second
+     */
+
+    public double getTickRate() {
+        return 1e9/this.tickNanos;
+    }
+
+    /**
+     * Returns how many frames are drawn per second at most.
+     *
+     * @return the maximum number of frames per second, or 0 if uncapped
+     */
+
+    public double getTargetFps() {
+        final long f = this.frameNanos;
+        return (f == 0)? 0: 1e9/f;
+    }
+
+    /**
+     * Returns the pacer holding frames to the target frame rate, which keeps pacing error statistics.
+     *
+     * @return the frame pacer
+     */
+
+    public FramePacer getPacer() {
+        return this.pacer;
+    }
+
+    /**
+     * Returns the measured frame rate.
+     *
+     * @return the smoothed number of frames drawn per second
+     */
+
+    public double getFps() {
+        return this.fps.getFps();
+    }
+
+    /**
+     * Returns the time spent running ticks in the last frame.
+     *
+     * @return the update time in nanoseconds
+     */
+
+    public long getUpdateTime() {
+        return this.updateTime;
+    }
+
+    /**
+     * Returns the time spent in {@link #render(double)} in the last frame.
+     *
+     * @return the render time in nanoseconds
+     */
+
+    public long getRenderTime() {
+        return this.renderTime;
+    }
+
+    /**
+     * Returns the time spent redrawing the console in the last frame.
+     *
+     * @return the present time in nanoseconds
+     */
+
+    public long getPresentTime() {
+        return this.presentTime;
+    }
+
+    /**
+     * Returns the time spent waiting for the target frame rate in the last frame.
+     *
+     * @return the sleep time in nanoseconds
+     */
+
+    public long getSleepTime() {
+        return this.sleepTime;
+    }
+
+    /**
+     * Returns the total length of the last frame.
+     *
+     * @return the frame time in nanoseconds
+     */
+
+    public long getFrameTime() {
+        return this.frameTime;
+    }
+
+    /**
+     * Returns how much time was not simulated because of the catch-up limit or the maximum frame time.
+     *
+     * @return the total dropped time in nanoseconds
+     */
+
+    public long getDroppedTime() {
+        return this.droppedTime;
+    }
+
+    /**
+     * Returns how many ticks have been run.
+     *
+     * @return the total number of ticks
+     */
+
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns how many frames have been drawn.
+     *
+     * @return the total number of frames
+     */
+
+    public long getFrames() {
+        return this.frames;
+    }
+}
@@ -12,10 +12,11 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.metadata.IIOMetadata;
@@ -26,22 +27,31 @@ import org.w3c.dom.NodeList;
 
 /**
  * Handles the loading and temporary storage of images for quick access.
+ * <p>
+ * Images are kept in video memory for quick drawing, along with a copy in normal memory.
+ * If the display takes the video memory back, such as when changing display mode, an image is restored from its copy the next time it is gotten.
+ * Images should therefore be gotten again each frame, rather than kept.
+ * <p>
+ * An ImageLoader may be used by several threads at once, such as when consoles drawn by a {@link ConsoleScheduler} share one.
  *
  * @author  Marcus Minhorst
  * @version 1.0
  */
 
 public class ImageLoader {
-    private final HashMap<Integer, ImageData> images;
-    private final GraphicsConfiguration       config;
+    private final ConcurrentHashMap<Integer, ImageData> images;
+    private final GraphicsConfiguration                 config;
 
     /**
      * Constructs an empty ImageLoader
      */
 
     public ImageLoader() {
+        Pipeline.bootstrap(); // may be made before any DCanvas
         this.config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
-        this.images = new HashMap<>();
+        this.images = new ConcurrentHashMap<>();
+
+        SurfaceMetrics.register(this);
     }
 
     /**
@@ -240,6 +250,40 @@ public class ImageLoader {
         return this.getImageData(key).getColumns();
     }
 
+    /**
+     * Describes whether the images associated with the specified key are held in video memory, and how much they use.
+     * Software draws count the times an image was gotten while it was not accelerated.
+     *
+     * @param key The key whose images are to be described
+     *
+     * @return A description of every frame and tile of the image
+     *
+     * @throws NoSuchElementException If the image has not yet been loaded yet
+     *
+     * @see #getSurfaceInfo()
+     */
+
+    public SurfaceInfo getSurfaceInfo(Object key) {
+        return this.getImageData(key).getSurfaceInfo();
+    }
+
+    /**
+     * Describes whether all images in the ImageLoader are held in video memory, and how much they use.
+     *
+     * @return A description of every loaded image added together
+     *
+     * @see #getSurfaceInfo(Object)
+     * @see SurfaceMetrics#getTotals()
+     */
+
+    public SurfaceInfo getSurfaceInfo() {
+        ImageData[] loaded = this.images.values().toArray(new ImageData[0]); // taken at once, other threads may load meanwhile
+        SurfaceInfo info = new SurfaceInfo("ImageLoader", 0, 0, 0, 0);
+        for (ImageData img: loaded)
+            info = info.add("ImageLoader", img.getSurfaceInfo());
+        return info;
+    }
+
     /**
      * Loads a copy of the image to be managed by the ImageLoader with default key.
      * The original image is used as the key.
@@ -319,11 +363,9 @@ public class ImageLoader {
      */
 
     public int load(Image image, Object key) {
-        this.unload(key);
-
-        ImageData t = new ImageData(toVolatileImage(image));
+        ImageData t = new ImageData(String.valueOf(key), this.toSource(image));
         int k = key.hashCode();
-        this.images.put(k, t);
+        this.replace(k, t);
         return k;
     }
 
@@ -369,18 +411,11 @@ public class ImageLoader {
      */
 
     public int load(File image, Object key) {
-        GifImage g = ImageLoader.loadGif(image, true);
-
-        VolatileImage[] v = new VolatileImage[g.getSize()];
-        for (int i = 0; i < v.length; i++) {
-            v[i] = this.toVolatileImage(g.getFrame(i).getImage());
-        }
-
-        this.unload(key);
+        BufferedImage[] v = ImageLoader.readFrames(image);
 
         int k = key.hashCode();
-        ImageData t = new ImageData(v);
-        this.images.put(k, t);
+        ImageData t = new ImageData(String.valueOf(key), v);
+        this.replace(k, t);
 
         return k;
     }
@@ -476,11 +511,9 @@ public class ImageLoader {
      */
 
     public int loadAsMap(Image image, Object key, int tileWidth, int tileHeight) {
-        this.unload(key);
-
-        ImageData t = new ImageData(tileWidth, tileHeight, toVolatileImage(image));
+        ImageData t = new ImageData(String.valueOf(key), tileWidth, tileHeight, this.toSource(image));
         int k = key.hashCode();
-        this.images.put(k, t);
+        this.replace(k, t);
         return k;
     }
 
@@ -532,22 +565,34 @@ public class ImageLoader {
      */
 
     public int loadAsMap(File image, Object key, int tileWidth, int tileHeight) {
-        GifImage g = ImageLoader.loadGif(image, true);
-
-        VolatileImage[] v = new VolatileImage[g.getSize()];
-        for (int i = 0; i < v.length; i++) {
-            v[i] = this.toVolatileImage(g.getFrame(i).getImage());
-        }
-
-        this.unload(key);
+        BufferedImage[] v = ImageLoader.readFrames(image);
 
         int k = key.hashCode();
-        ImageData t = new ImageData(tileWidth, tileHeight, v);
-        this.images.put(k, t);
+        ImageData t = new ImageData(String.valueOf(key), tileWidth, tileHeight, v);
+        this.replace(k, t);
 
         return k;
     }
 
+    VolatileImage getOrLoad(String image) { // loads it once, even if several threads ask for it at the same time
+        return this.images.computeIfAbsent(image.hashCode(), k -> new ImageData(image, ImageLoader.readFrames(new File(image)))).get(0, 0, 0);
+    }
+
+    private void replace(int k, ImageData t) { // swapped in one step, so no thread sees the key missing
+        ImageData old = this.images.put(k, t);
+        if (old != null) old.flush();
+    }
+
+    private static BufferedImage[] readFrames(File image) {
+        GifImage g = ImageLoader.loadGif(image, true);
+
+        BufferedImage[] v = new BufferedImage[g.getSize()];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = g.getFrame(i).getImage();
+        }
+        return v;
+    }
+
     private ImageData getImageData(Object key) {
         Integer hash = key.hashCode();
         ImageData img = this.images.get(hash);
@@ -555,34 +600,22 @@ public class ImageLoader {
         return img;
     }
 
-    private VolatileImage toVolatileImage(Image img) {
+    private BufferedImage toSource(Image img) { // copy kept in memory, lost images are restored from it
         if (img instanceof VolatileImage)
-            return (VolatileImage)img;
-
-        boolean a = img instanceof Transparency;
-        VolatileImage v;
-        int w = img.getWidth(null);
-        int h = img.getHeight(null);
+            return ((VolatileImage)img).getSnapshot();
 
-        if (!a) {
-            v = this.config.createCompatibleVolatileImage(w, h, Transparency.OPAQUE);
-        } else {
-            a = ((Transparency)img).getTransparency() != Transparency.OPAQUE;
-            v = this.config.createCompatibleVolatileImage(w, h, ((Transparency)img).getTransparency());
-        }
+        int t = (img instanceof Transparency)? ((Transparency)img).getTransparency(): Transparency.OPAQUE;
+        BufferedImage b = this.config.createCompatibleImage(img.getWidth(null), img.getHeight(null), t);
 
         Graphics2D g = null;
         try {
-            g = v.createGraphics();
-
-            if (a) ImageLoader.clear(g, w, h);
-
+            g = b.createGraphics();
             g.drawImage(img, 0, 0, null);
         } finally {
-            g.dispose();
+            if (g != null) g.dispose();
         }
 
-        return v;
+        return b;
     }
 
     private static int getAttribute(IIOMetadataNode n, String s) {
@@ -603,30 +636,63 @@ public class ImageLoader {
         return null;
     }
 
-    private class ImageData {
+    private class ImageData { // accelerated copies of the source, restored when the display takes them away, locked while checked
+        final String              name;
+        final BufferedImage[]     source;
+        final int                 w;
+        final int                 h;
         final VolatileImage[][][] v;
-        ImageData(VolatileImage... v) {
-            this.v = new VolatileImage[v.length][1][1];
-            for (int i = 0; i < v.length; i++)
-                this.v[i][0][0] = v[i];
-        }
-        ImageData(int w, int h, VolatileImage... v) {
-            int r = v[0].getWidth()/w;
-            int c = v[0].getHeight()/h;
-            this.v = new VolatileImage[v.length][r][c];
-            for (int i = 0; i < v.length; i++)
+        final AtomicLong          software; // times an image was gotten while not accelerated
+        ImageData(String name, BufferedImage... source) {
+            this(name, source[0].getWidth(), source[0].getHeight(), source);
+        }
+        ImageData(String name, int w, int h, BufferedImage... source) {
+            int r = source[0].getWidth()/w;
+            int c = source[0].getHeight()/h;
+            this.name = name;
+            this.software = new AtomicLong();
+            this.source = source;
+            this.w = w;
+            this.h = h;
+            this.v = new VolatileImage[source.length][r][c];
+            for (int i = 0; i < source.length; i++)
                 for (int j = 0; j < r; j++)
-                    for (int k = 0; k < c; k++) {
-                        VolatileImage t = ImageLoader.this.config.createCompatibleVolatileImage(w, h, v[i].getTransparency());
-                        Graphics2D g = t.createGraphics();
-                        ImageLoader.clear(g, w, h);
-                        g.drawImage(v[i], -w*j, -h*k, null);
-                        g.dispose();
-                        this.v[i][j][k] = t;
-                    }
-        }
-        VolatileImage get(int f, int x, int y) {
-            return this.v[f][x][y];
+                    for (int k = 0; k < c; k++)
+                        this.v[i][j][k] = this.create(i, j, k);
+        }
+        private VolatileImage create(int f, int x, int y) {
+            VolatileImage t = ImageLoader.this.config.createCompatibleVolatileImage(this.w, this.h, this.source[f].getTransparency());
+            this.paint(t, f, x, y);
+            return t;
+        }
+        private void paint(VolatileImage t, int f, int x, int y) { // copies the tile from the source
+            Graphics2D g = null;
+            try {
+                g = t.createGraphics();
+                ImageLoader.clear(g, this.w, this.h);
+                g.drawImage(this.source[f], -this.w*x, -this.h*y, null);
+            } finally {
+                if (g != null) g.dispose();
+            }
+        }
+        synchronized VolatileImage get(int f, int x, int y) {
+            VolatileImage t = this.v[f][x][y];
+            int s = t.validate(ImageLoader.this.config);
+            if (s == VolatileImage.IMAGE_OK) {
+                if (!DCanvas.isAccelerated(t, ImageLoader.this.config)) this.software.incrementAndGet();
+                return t;
+            }
+
+            long start = System.nanoTime();
+            if (s == VolatileImage.IMAGE_INCOMPATIBLE) { // display changed, remake it to suit
+                t.flush();
+                t = this.create(f, x, y);
+                this.v[f][x][y] = t;
+            } else { // IMAGE_RESTORED, same image but the contents are gone
+                this.paint(t, f, x, y);
+            }
+            SurfaceMetrics.record(s == VolatileImage.IMAGE_INCOMPATIBLE, System.nanoTime() - start);
+            return t;
         }
         int getFrames() {
             return this.v.length;
@@ -637,13 +703,25 @@ public class ImageLoader {
         int getColumns() {
             return this.v[0][0].length;
         }
-        void flush() {
+        synchronized void flush() {
             for (int i = 0; i < this.getFrames(); i++)
                 for (int j = 0; j < this.getRows(); j++)
                     for (int k = 0; k < this.getColumns(); k++)
                         v[i][j][k].flush();
         }
-        VolatileImage[][][] getMap() {
+        synchronized SurfaceInfo getSurfaceInfo() {
+            SurfaceInfo info = new SurfaceInfo(this.name, 0, 0, 0, this.software.get());
+            for (VolatileImage[][] f: this.v)
+                for (VolatileImage[] r: f)
+                    for (VolatileImage t: r)
+                        info = info.add(this.name, SurfaceInfo.of(this.name, t, ImageLoader.this.config, 0));
+            return info;
+        }
+        synchronized VolatileImage[][][] getMap() { // every image is checked, since they may be kept and drawn later
+            for (int i = 0; i < this.getFrames(); i++)
+                for (int j = 0; j < this.getRows(); j++)
+                    for (int k = 0; k < this.getColumns(); k++)
+                        this.get(i, j, k);
             return this.v;
         }
     }
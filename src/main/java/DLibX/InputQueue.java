@@ -0,0 +1,212 @@
+package DLibX;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+/**
+ * Queue of every key and mouse event a DConsole receives, in order, with the time each arrived.
+ * <p>
+ * Events are written by the event dispatch thread into a ring of preallocated arrays, and read back by one other thread, such as a game loop, whenever it is ready.
+ * Neither side locks or allocates, so draining the queue creates no garbage, and the order and timing of events within a frame is kept.
+ * The queue is read like a cursor: {@link #next()} moves to the next event, whose fields are then read with the getters.
+ * <pre>
+ * while (queue.next()) {
+ *     if (queue.getType() == KeyEvent.KEY_PRESSED) ...
+ * }
+ * </pre>
+ * If the queue fills up because it is not drained, new events are dropped and counted.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ *
+ * @see DConsole#enableInputQueue(int)
+ */
+
+public final class InputQueue {
+    private final int      mask;
+    private final int[]    type;
+    private final int[]    code;
+    private final int[]    x;
+    private final int[]    y;
+    private final int[]    modifiers;
+    private final long[]   time;
+    private final double[] wheel;
+
+    private volatile long  head;    // next slot to write, only the event thread changes it
+    private volatile long  tail;    // next slot to read, only the reading thread changes it
+    private volatile long  dropped;
+    private int            current; // slot the getters read
+    private boolean        reading; // current holds an event, which is freed by the next call to next
+
+    InputQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24)
+            throw new IllegalArgumentException("Capacity must be from 1 to " + (1 << 24) + ", you have: " + capacity);
+        int size = 1;
+        while (size < capacity) size <<= 1; // power of two, so slots are found by masking
+        this.mask = size - 1;
+        this.type = new int[size];
+        this.code = new int[size];
+        this.x = new int[size];
+        this.y = new int[size];
+        this.modifiers = new int[size];
+        this.time = new long[size];
+        this.wheel = new double[size];
+    }
+
+    void offer(KeyEvent e) {
+        this.offer(e.getID(), (e.getID() == KeyEvent.KEY_TYPED)? e.getKeyChar(): e.getKeyCode(), 0, 0, e.getModifiersEx(), 0);
+    }
+
+    void offer(MouseEvent e) {
+        if (e instanceof MouseWheelEvent) {
+            final MouseWheelEvent w = (MouseWheelEvent)e;
+            this.offer(e.getID(), w.getWheelRotation(), e.getX(), e.getY(), e.getModifiersEx(), w.getPreciseWheelRotation());
+        } else {
+            this.offer(e.getID(), e.getButton(), e.getX(), e.getY(), e.getModifiersEx(), 0);
+        }
+    }
+
+    private void offer(int type, int code, int x, int y, int modifiers, double wheel) { // only ever called by one thread
+        final long h = this.head;
+        if (h - this.tail > this.mask) { // full
+            this.dropped++;
+            return;
+        }
+        final int i = (int)h & this.mask;
+        this.type[i] = type;
+        this.code[i] = code;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.modifiers[i] = modifiers;
+        this.time[i] = System.nanoTime();
+        this.wheel[i] = wheel;
+        this.head = h + 1; // publishes the fields written above
+    }
+
+    /**
+     * Moves to the next event, freeing the one read before.
+     * Only one thread may read a queue.
+     *
+     * @return true if there was another event, which the getters now return
+     */
+
+    public boolean next() {
+        long t = this.tail;
+        if (this.reading) this.tail = ++t; // done with the previous event, the event thread may reuse its slot
+        this.reading = t != this.head;
+        if (this.reading) this.current = (int)t & this.mask;
+        return this.reading;
+    }
+
+    /**
+     * Drops every event not yet read.
+     */
+
+    public void clear() {
+        this.reading = false;
+        this.tail = this.head;
+    }
+
+    /**
+     * Returns the number of events waiting to be read, not counting the current one.
+     *
+     * @return the number of events in the queue
+     */
+
+    public int size() {
+        return (int)(this.head - this.tail) - (this.reading? 1: 0);
+    }
+
+    /**
+     * Returns the number of events the queue can hold.
+     *
+     * @return the capacity, the requested capacity rounded up to a power of two
+     */
+
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Returns the number of events dropped because the queue was full.
+     *
+     * @return the number of dropped events
+     */
+
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// CURRENT EVENT
+
+    /**
+     * Returns what kind of event the current event is.
+     *
+     * @return the AWT event id, such as {@link KeyEvent#KEY_PRESSED}, {@link MouseEvent#MOUSE_MOVED} or {@link MouseEvent#MOUSE_WHEEL}
+     */
+
+    public int getType() {
+        return this.type[this.current];
+    }
+
+    /**
+     * Returns the code of the current event.
+     *
+     * @return the key code for key presses and releases, the character for typed keys, the button for mouse events, or the whole wheel clicks for wheel events
+     */
+
+    public int getCode() {
+        return this.code[this.current];
+    }
+
+    /**
+     * Returns the X position of the mouse for the current event, in window pixels.
+     *
+     * @return the X position of the mouse, or 0 for key events
+     */
+
+    public int getX() {
+        return this.x[this.current];
+    }
+
+    /**
+     * Returns the Y position of the mouse for the current event, in window pixels.
+     *
+     * @return the Y position of the mouse, or 0 for key events
+     */
+
+    public int getY() {
+        return this.y[this.current];
+    }
+
+    /**
+     * Returns the modifier keys and mouse buttons held down during the current event.
+     *
+     * @return the extended modifiers, such as {@link java.awt.event.InputEvent#SHIFT_DOWN_MASK}
+     */
+
+    public int getModifiers() {
+        return this.modifiers[this.current];
+    }
+
+    /**
+     * Returns when the current event arrived, as measured by {@link System#nanoTime()}.
+     *
+     * @return the time the event arrived in nanoseconds
+     */
+
+    public long getTime() {
+        return this.time[this.current];
+    }
+
+    /**
+     * Returns how far the mouse wheel turned in the current event, including fractions of a click.
+     *
+     * @return the precise wheel rotation, or 0 for other events
+     */
+
+    public double getWheel() {
+        return this.wheel[this.current];
+    }
+}
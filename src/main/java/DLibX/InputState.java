@@ -0,0 +1,227 @@
+package DLibX;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * The keyboard and mouse as they were at the start of a frame.
+ * <p>
+ * A DConsole latches its input every time it is redrawn, see {@link DConsole#getInput()}.
+ * A state tells which keys and mouse buttons are held, which went down since the previous latch and which went up since then.
+ * A key tapped between two latches is both pressed and released in the same state, so no press is missed.
+ * Reading a state changes nothing, so any number of parts of a program can read the same state and agree.
+ * <p>
+ * A DConsole keeps two states and latches into them in turn, so a state stays the same until the DConsole has latched twice more.
+ * It should be gotten again every frame rather than kept.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public final class InputState {
+    private final Bits keysHeld;
+    private final Bits keysPressed;
+    private final Bits keysReleased;
+    private final Bits buttonsHeld;
+    private final Bits buttonsPressed;
+    private final Bits buttonsReleased;
+
+    private long   frame;
+    private int    mouseX;
+    private int    mouseY;
+    private double wheel;
+
+    InputState(int keys, int buttons) {
+        this.keysHeld = new Bits(keys);
+        this.keysPressed = new Bits(keys);
+        this.keysReleased = new Bits(keys);
+        this.buttonsHeld = new Bits(buttons);
+        this.buttonsPressed = new Bits(buttons);
+        this.buttonsReleased = new Bits(buttons);
+    }
+
+    void latch(long frame, AtomicBitSet keysHeld, AtomicBitSet keysPressed, AtomicBitSet keysReleased,
+               AtomicBitSet buttonsHeld, AtomicBitSet buttonsPressed, AtomicBitSet buttonsReleased,
+               int mouseX, int mouseY, double wheel) { // edges are taken, so each is seen by one latch only
+        this.frame = frame;
+        this.keysHeld.extra = keysHeld.copyWords(this.keysHeld.words);
+        this.keysPressed.extra = keysPressed.drainWords(this.keysPressed.words);
+        this.keysReleased.extra = keysReleased.drainWords(this.keysReleased.words);
+        this.buttonsHeld.extra = buttonsHeld.copyWords(this.buttonsHeld.words);
+        this.buttonsPressed.extra = buttonsPressed.drainWords(this.buttonsPressed.words);
+        this.buttonsReleased.extra = buttonsReleased.drainWords(this.buttonsReleased.words);
+        this.mouseX = mouseX;
+        this.mouseY = mouseY;
+        this.wheel = wheel;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// KEYS
+
+    /**
+     * Checks if a key is held down.
+     *
+     * @param keycode the key to check for
+     *
+     * @return if the key is held
+     */
+
+    public boolean isKeyHeld(int keycode) {
+        return this.keysHeld.get(keycode);
+    }
+
+    /**
+     * Checks if a key is held down.
+     *
+     * @param key the key to check for
+     *
+     * @return if the key is held
+     */
+
+    public boolean isKeyHeld(char key) {
+        return this.keysHeld.get(KeyEvent.getExtendedKeyCodeForChar(key));
+    }
+
+    /**
+     * Checks if a key went down this frame.
+     * Keys repeating while held down do not count.
+     *
+     * @param keycode the key to check for
+     *
+     * @return if the key was pressed since the previous frame
+     */
+
+    public boolean isKeyPressed(int keycode) {
+        return this.keysPressed.get(keycode);
+    }
+
+    /**
+     * Checks if a key went down this frame.
+     * Keys repeating while held down do not count.
+     *
+     * @param key the key to check for
+     *
+     * @return if the key was pressed since the previous frame
+     */
+
+    public boolean isKeyPressed(char key) {
+        return this.keysPressed.get(KeyEvent.getExtendedKeyCodeForChar(key));
+    }
+
+    /**
+     * Checks if a key went up this frame.
+     *
+     * @param keycode the key to check for
+     *
+     * @return if the key was released since the previous frame
+     */
+
+    public boolean isKeyReleased(int keycode) {
+        return this.keysReleased.get(keycode);
+    }
+
+    /**
+     * Checks if a key went up this frame.
+     *
+     * @param key the key to check for
+     *
+     * @return if the key was released since the previous frame
+     */
+
+    public boolean isKeyReleased(char key) {
+        return this.keysReleased.get(KeyEvent.getExtendedKeyCodeForChar(key));
+    }
+
+    //////////////////////////////////////////////////////////////////////////// MOUSE
+
+    /**
+     * Checks if a mouse button is held down.
+     *
+     * @param button the button to check for, such as {@link java.awt.event.MouseEvent#BUTTON1}
+     *
+     * @return if the button is held
+     */
+
+    public boolean isButtonHeld(int button) {
+        return this.buttonsHeld.get(button);
+    }
+
+    /**
+     * Checks if a mouse button went down this frame.
+     *
+     * @param button the button to check for
+     *
+     * @return if the button was pressed since the previous frame
+     */
+
+    public boolean isButtonPressed(int button) {
+        return this.buttonsPressed.get(button);
+    }
+
+    /**
+     * Checks if a mouse button went up this frame.
+     *
+     * @param button the button to check for
+     *
+     * @return if the button was released since the previous frame
+     */
+
+    public boolean isButtonReleased(int button) {
+        return this.buttonsReleased.get(button);
+    }
+
+    /**
+     * Returns the X position of the mouse, as {@link DConsole#getMouseXPosition()} would have.
+     *
+     * @return the X position of the mouse
+     */
+
+    public int getMouseX() {
+        return this.mouseX;
+    }
+
+    /**
+     * Returns the Y position of the mouse, as {@link DConsole#getMouseYPosition()} would have.
+     *
+     * @return the Y position of the mouse
+     */
+
+    public int getMouseY() {
+        return this.mouseY;
+    }
+
+    /**
+     * Returns how far the mouse wheel turned this frame.
+     *
+     * @return the wheel rotation since the previous frame, negative when turned away from the user
+     */
+
+    public double getWheel() {
+        return this.wheel;
+    }
+
+    /**
+     * Returns which latch this state came from, counting from 1.
+     *
+     * @return the frame number
+     */
+
+    public long getFrame() {
+        return this.frame;
+    }
+
+    private static class Bits { // plain copy of an AtomicBitSet
+        final long[] words;
+        int[]        extra; // numbers too large for the words
+
+        Bits(int size) {
+            this.words = new long[(size + 63) >>> 6];
+            this.extra = new int[0];
+        }
+
+        boolean get(int i) {
+            if (i < 0) return false;
+            if ((i >>> 6) < this.words.length) return (this.words[i >>> 6] & (1L << i)) != 0;
+            for (int e: this.extra) if (e == i) return true;
+            return false;
+        }
+    }
+}
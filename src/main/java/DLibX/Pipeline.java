@@ -0,0 +1,344 @@
+package DLibX;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chooses the Java2D rendering pipeline used to draw.
+ * <p>
+ * Java2D reads which pipeline to use from system properties once, when graphics are first used, so the choice has to be made before any DCanvas or DConsole is made.
+ * If nothing is selected, the OpenGL pipeline is used, unless a pipeline was chosen on the command line.
+ * <p>
+ * {@link #autoSelect()} measures every pipeline this system offers and selects the fastest.
+ * Each is measured in a separate JVM, since a JVM can only ever use one pipeline.
+ * The choice is saved in the user's home directory, so the measurement only runs once per machine and Java version.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public class Pipeline {
+    /**
+     * DEFAULT pipeline chosen by Java for this platform.
+     */
+    public static final int DEFAULT = 0;
+    /**
+     * OPENGL accelerated pipeline.
+     */
+    public static final int OPENGL = 1;
+    /**
+     * XRENDER accelerated pipeline, available on Linux.
+     */
+    public static final int XRENDER = 2;
+    /**
+     * DIRECT3D accelerated pipeline, available on Windows.
+     */
+    public static final int DIRECT3D = 3;
+    /**
+     * SOFTWARE pipeline, drawn by the processor.
+     */
+    public static final int SOFTWARE = 4;
+
+    private static final String[] NAMES = {"DEFAULT", "OPENGL", "XRENDER", "DIRECT3D", "SOFTWARE"};
+
+    private static final File CACHE = new File(new File(System.getProperty("user.home"), ".dlibx"), "pipeline.properties");
+
+    private static int     selected = -1; // -1 until selected
+    private static boolean started;       // graphics have been set up, too late to choose
+
+    private Pipeline() {}
+
+    /**
+     * Selects the rendering pipeline.
+     * This must be called before any DCanvas or DConsole is made.
+     *
+     * @param pipeline DEFAULT, OPENGL, XRENDER, DIRECT3D or SOFTWARE
+     *
+     * @throws IllegalArgumentException if the pipeline is not one of the above
+     * @throws IllegalStateException    if graphics have already been set up
+     */
+
+    public static synchronized void select(int pipeline) {
+        if (pipeline < Pipeline.DEFAULT || pipeline > Pipeline.SOFTWARE)
+            throw new IllegalArgumentException("Pipeline must be DEFAULT, OPENGL, XRENDER, DIRECT3D or SOFTWARE, you have: " + pipeline);
+        if (Pipeline.started)
+            throw new IllegalStateException("Pipeline must be selected before any DCanvas or DConsole is made");
+        Pipeline.selected = pipeline;
+    }
+
+    /**
+     * Returns the selected rendering pipeline.
+     *
+     * @return DEFAULT, OPENGL, XRENDER, DIRECT3D or SOFTWARE
+     */
+
+    public static synchronized int getSelected() {
+        return (Pipeline.selected < 0)? Pipeline.OPENGL: Pipeline.selected;
+    }
+
+    /**
+     * Returns the name of a rendering pipeline.
+     *
+     * @param pipeline the pipeline
+     *
+     * @return the name of the pipeline, such as "OPENGL"
+     */
+
+    public static String getName(int pipeline) {
+        return (pipeline < 0 || pipeline >= Pipeline.NAMES.length)? "UNKNOWN": Pipeline.NAMES[pipeline];
+    }
+
+    /**
+     * Returns the rendering pipelines this platform may offer.
+     *
+     * @return the pipelines that may be available
+     */
+
+    public static int[] getCandidates() {
+        final String os = System.getProperty("os.name", "").toLowerCase();
+        if (os.startsWith("windows")) return new int[] {Pipeline.DIRECT3D, Pipeline.OPENGL, Pipeline.SOFTWARE};
+        if (os.startsWith("mac")) return new int[] {Pipeline.DEFAULT, Pipeline.OPENGL};
+        return new int[] {Pipeline.OPENGL, Pipeline.XRENDER, Pipeline.SOFTWARE};
+    }
+
+    /**
+     * Selects the fastest rendering pipeline for this machine.
+     * <p>
+     * The first time this is called on a machine, every candidate pipeline is measured for a fraction of a second in a separate JVM, and the choice is saved.
+     * Later calls read the saved choice.
+     * If nothing could be measured, the selection is left as it is.
+     *
+     * @return the selected pipeline
+     *
+     * @throws IllegalStateException if graphics have already been set up
+     */
+
+    public static synchronized int autoSelect() {
+        if (Pipeline.started)
+            throw new IllegalStateException("Pipeline must be selected before any DCanvas or DConsole is made");
+
+        final String key = Pipeline.cacheKey();
+        final Properties cache = Pipeline.readCache();
+        final String saved = cache.getProperty(key);
+        if (saved != null) {
+            for (int i = 0; i < Pipeline.NAMES.length; i++) {
+                if (Pipeline.NAMES[i].equals(saved)) {
+                    Pipeline.selected = i;
+                    return i;
+                }
+            }
+        }
+
+        int best = -1;
+        double bestScore = 0;
+        for (int p: Pipeline.getCandidates()) {
+            final double score = Pipeline.measure(p);
+            if (score > bestScore) {
+                best = p;
+                bestScore = score;
+            }
+        }
+        if (best < 0) return Pipeline.getSelected(); // headless, or nothing ran
+
+        Pipeline.selected = best;
+        cache.setProperty(key, Pipeline.NAMES[best]);
+        Pipeline.writeCache(cache);
+        return best;
+    }
+
+    /**
+     * Forgets the saved choice of {@link #autoSelect()}, so the pipelines are measured again next time.
+     */
+
+    public static synchronized void clearCache() {
+        final Properties cache = Pipeline.readCache();
+        cache.remove(Pipeline.cacheKey());
+        Pipeline.writeCache(cache);
+    }
+
+    static synchronized void bootstrap() { // applies the selection, called before any graphics are set up
+        if (Pipeline.started) return;
+        Pipeline.started = true;
+
+        System.setProperty("sun.awt.noerasebackground", "true"); // DConsole paints every pixel itself
+
+        if (Pipeline.selected < 0) { // not selected, keep what was chosen on the command line
+            if (System.getProperty("sun.java2d.opengl") == null && System.getProperty("sun.java2d.xrender") == null
+                && System.getProperty("sun.java2d.d3d") == null) {
+                System.setProperty("sun.java2d.opengl", "true");
+            }
+            return;
+        }
+
+        for (String[] p: Pipeline.properties(Pipeline.selected)) System.setProperty(p[0], p[1]);
+    }
+
+    private static String[][] properties(int pipeline) { // system properties that choose a pipeline
+        switch (pipeline) {
+        case OPENGL:
+            return new String[][] {{"sun.java2d.opengl", "true"}, {"sun.java2d.xrender", "false"}, {"sun.java2d.d3d", "false"}};
+        case XRENDER:
+            return new String[][] {{"sun.java2d.xrender", "true"}, {"sun.java2d.opengl", "false"}};
+        case DIRECT3D:
+            return new String[][] {{"sun.java2d.d3d", "true"}, {"sun.java2d.opengl", "false"}};
+        case SOFTWARE:
+            return new String[][] {{"sun.java2d.opengl", "false"}, {"sun.java2d.xrender", "false"}, {"sun.java2d.d3d", "false"}, {"sun.java2d.noddraw", "true"}};
+        default:
+            return new String[0][];
+        }
+    }
+
+    private static double measure(int pipeline) { // runs the benchmark in a child JVM, frames per second or 0
+        final ArrayList<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        for (String[] p: Pipeline.properties(pipeline)) command.add("-D" + p[0] + "=" + p[1]);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmark.class.getName());
+
+        Process process = null;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            final InputStream out = process.getInputStream();
+            final AtomicReference<String> result = new AtomicReference<>();
+            final Thread reader = new Thread(() -> Pipeline.readResult(out, result), "Pipeline measure");
+            reader.setDaemon(true); // a hung child must not keep this JVM alive
+            reader.start();
+
+            if (!process.waitFor(10, TimeUnit.SECONDS)) return 0; // hung, such as in driver setup, killed below
+            reader.join(1000); // the output ends once the child has exited
+            if (process.exitValue() != 0 || result.get() == null) return 0;
+            return Double.parseDouble(result.get());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            if (process != null) process.destroyForcibly();
+        }
+    }
+
+    private static void readResult(InputStream out, AtomicReference<String> result) { // reads the child's output to its end
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(out))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.startsWith("fps ")) result.set(line.substring(4).trim());
+            }
+        } catch (IOException e) {
+            result.set(null); // output was cut off, such as by the child being killed, so nothing was measured
+        }
+    }
+
+    private static String cacheKey() { // a choice only holds for the same system and Java
+        return (System.getProperty("os.name") + "-" + System.getProperty("os.arch") + "-" + System.getProperty("java.version")).replace(' ', '_');
+    }
+
+    private static Properties readCache() {
+        final Properties p = new Properties();
+        if (Pipeline.CACHE.isFile()) {
+            try (InputStream in = new FileInputStream(Pipeline.CACHE)) {
+                p.load(in);
+            } catch (IOException e) {
+                // unreadable cache is the same as none
+            }
+        }
+        return p;
+    }
+
+    private static void writeCache(Properties p) {
+        Pipeline.CACHE.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(Pipeline.CACHE)) {
+            p.store(out, "DLibX rendering pipeline choices");
+        } catch (IOException e) {
+            // measured again next time
+        }
+    }
+
+    /**
+     * Measures drawing speed of the pipeline the JVM was started with; run by {@link Pipeline#autoSelect()}.
+     */
+
+    public static class Benchmark {
+        private Benchmark() {}
+
+        /**
+         * Draws typical frames for a fraction of a second, then prints the frame rate.
+         *
+         * @param args unused
+         */
+
+        public static void main(String[] args) {
+            if (GraphicsEnvironment.isHeadless()) System.exit(1);
+
+            final GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+            final VolatileImage target = config.createCompatibleVolatileImage(1280, 720);
+            final VolatileImage sprite = config.createCompatibleVolatileImage(64, 64, Transparency.TRANSLUCENT); // DCanvas is not touched, it would choose a pipeline
+            final BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+            Graphics2D s = sprite.createGraphics();
+            s.setComposite(AlphaComposite.Clear);
+            s.fillRect(0, 0, 64, 64);
+            s.setComposite(AlphaComposite.SrcOver);
+            s.setColor(Color.ORANGE);
+            s.fillOval(0, 0, 64, 64);
+            s.dispose();
+
+            long frames = 0;
+            long start = 0;
+            final long warmup = System.nanoTime() + 200_000_000L;
+            final AffineTransform t = new AffineTransform();
+            while (true) {
+                final long now = System.nanoTime();
+                if (start == 0 && now > warmup) {
+                    start = now;
+                    frames = 0;
+                }
+                if (start != 0 && now - start > 500_000_000L) break;
+
+                Graphics2D g = target.createGraphics();
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, 1280, 720);
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                for (int i = 0; i < 200; i++) {
+                    g.setColor(new Color(i*1237 & 0xFFFFFF));
+                    g.fillOval((int)(i*37 + frames)%1280, (i*53)%720, 24, 24);
+                    t.setToRotation(i + frames*0.01, (i*71)%1280, (i*29)%720);
+                    g.drawImage(sprite, t, null);
+                }
+                g.setColor(Color.BLACK);
+                g.drawString("DLibX", 10, 20);
+                g.dispose();
+
+                Graphics2D p = probe.createGraphics(); // reading a pixel back waits for queued drawing to finish
+                p.drawImage(target, 0, 0, 1, 1, 0, 0, 1, 1, null);
+                p.dispose();
+                Toolkit.getDefaultToolkit().sync();
+                frames++;
+            }
+
+            System.out.println("fps " + frames*1e9/(System.nanoTime() - start));
+            System.exit(0);
+        }
+    }
+}
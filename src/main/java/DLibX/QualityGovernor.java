@@ -0,0 +1,347 @@
+package DLibX;
+
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+
+/**
+ * Chooses rendering quality per layer to keep frames within a time budget.
+ * <p>
+ * A frame is divided into layers, such as the background, sprites and text, each drawn between {@link #begin(DCanvas, int)} and {@link #end(int)}.
+ * Each layer is drawn at one of three quality tiers, which set the rendering hints of the canvas for that layer.
+ * The time each layer takes is measured, and at the end of every frame:
+ * <ul>
+ * <li>if frames take longer than the budget, the most expensive layer that can still be lowered drops a tier.</li>
+ * <li>if frames have plenty of time to spare, the cheapest layer that can still be raised goes up a tier.</li>
+ * </ul>
+ * Like the {@link DLibX.util.ResolutionScaler}, either condition must hold for a number of frames in a row, and tiers are left alone for a while after every change.
+ * <p>
+ * Accelerated pipelines may queue drawing and finish it later, in which case a layer's time is mostly the time taken to issue its drawing.
+ * Passing the whole cost of the frame, including presenting it, to {@link #endFrame(long)} keeps the budget accurate even then.
+ * A governor is meant to be used from the thread that draws.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public class QualityGovernor {
+    /**
+     * LOW quality tier, drawn with {@link DCanvas#RENDER_LOW_QUALITY}.
+     */
+    public static final int TIER_LOW = 0;
+    /**
+     * MEDIUM quality tier, drawn with {@link DCanvas#RENDER_MEDIUM_QUALITY}.
+     */
+    public static final int TIER_MEDIUM = 1;
+    /**
+     * HIGH quality tier, drawn with {@link DCanvas#RENDER_HIGH_QUALITY}.
+     */
+    public static final int TIER_HIGH = 2;
+
+    private static final RenderingHints[] HINTS = {DCanvas.RENDER_LOW_QUALITY, DCanvas.RENDER_MEDIUM_QUALITY, DCanvas.RENDER_HIGH_QUALITY};
+
+    private final ArrayList<Layer> layers;
+
+    private long   budget;      // frame time to stay within, in nanoseconds
+    private double lower;       // fraction of the budget above which a tier is lowered
+    private double raise;       // fraction of the budget below which a tier is raised
+    private int    lowerFrames;
+    private int    raiseFrames;
+    private int    cooldown;
+
+    private double average;     // smoothed frame cost
+    private int    over;
+    private int    under;
+    private int    wait;
+
+    /**
+     * Makes a quality governor that keeps frames within the time of a target frame rate.
+     *
+     * @param fps the frame rate to hold
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public QualityGovernor(double fps) {
+        this.layers = new ArrayList<>();
+        this.setTargetFps(fps);
+        this.lower = 1.0;
+        this.raise = 0.6;
+        this.lowerFrames = 8;
+        this.raiseFrames = 120;
+        this.cooldown = 30;
+    }
+
+    /**
+     * Adds a layer that starts at the HIGH tier.
+     *
+     * @param name the name of the layer, for debugging
+     *
+     * @return the layer number, used with {@link #begin(DCanvas, int)} and {@link #end(int)}
+     */
+
+    public int addLayer(String name) {
+        return this.addLayer(name, QualityGovernor.TIER_HIGH);
+    }
+
+    /**
+     * Adds a layer.
+     * The governor never raises the layer above its highest tier.
+     *
+     * @param name    the name of the layer, for debugging
+     * @param highest the highest tier the layer may be drawn at, which it starts at
+     *
+     * @return the layer number, used with {@link #begin(DCanvas, int)} and {@link #end(int)}
+     */
+
+    public int addLayer(String name, int highest) {
+        QualityGovernor.checkTier(highest);
+        this.layers.add(new Layer(name, highest));
+        return this.layers.size() - 1;
+    }
+
+    private static void checkTier(int tier) {
+        if (tier < QualityGovernor.TIER_LOW || tier > QualityGovernor.TIER_HIGH) {
+            throw new IllegalArgumentException("Tier must be TIER_LOW, TIER_MEDIUM or TIER_HIGH, you have: " + tier);
+        }
+    }
+
+    /**
+     * Starts drawing a layer, setting the rendering hints of its tier on the canvas.
+     *
+     * @param canvas the canvas the layer is drawn on
+     * @param layer  the layer number
+     */
+
+    public void begin(DCanvas canvas, int layer) {
+        final Layer l = this.layers.get(layer);
+        canvas.setRenderingHints(QualityGovernor.HINTS[l.tier]);
+        l.start = System.nanoTime();
+    }
+
+    /**
+     * Finishes drawing a layer, and measures how long it took.
+     *
+     * @param layer the layer number
+     */
+
+    public void end(int layer) {
+        final Layer l = this.layers.get(layer);
+        if (l.start != 0) l.time += System.nanoTime() - l.start;
+        l.start = 0;
+    }
+
+    /**
+     * Finishes a frame, measuring its cost as the time spent in all layers, and changes tiers if needed.
+     */
+
+    public void endFrame() {
+        long total = 0;
+        for (Layer l: this.layers) total += l.time;
+        this.endFrame(total);
+    }
+
+    /**
+     * Finishes a frame with a measured cost, and changes tiers if needed.
+     * Use this when more than the layers should count, such as presenting the frame; time spent waiting for the next frame should not be counted.
+     *
+     * @param nanos the cost of the frame in nanoseconds
+     */
+
+    public void endFrame(long nanos) {
+        for (Layer l: this.layers) { // per layer cost, smoothed
+            l.average = (l.average == 0)? l.time: l.average*0.9 + l.time*0.1;
+            l.time = 0;
+        }
+
+        this.average = (this.average == 0)? nanos: this.average*0.8 + nanos*0.2;
+
+        if (this.average > this.budget*this.lower) {
+            this.over++;
+            this.under = 0;
+        } else if (this.average < this.budget*this.raise) {
+            this.under++;
+            this.over = 0;
+        } else {
+            this.over = 0;
+            this.under = 0;
+        }
+
+        if (this.wait > 0) {
+            this.wait--;
+        } else if (this.over >= this.lowerFrames) {
+            this.degrade();
+        } else if (this.under >= this.raiseFrames) {
+            this.upgrade();
+        }
+    }
+
+    private void degrade() { // most expensive layer that can go lower
+        Layer worst = null;
+        for (Layer l: this.layers) {
+            if (l.tier > QualityGovernor.TIER_LOW && (worst == null || l.average > worst.average)) worst = l;
+        }
+        if (worst != null) this.change(worst, worst.tier - 1);
+    }
+
+    private void upgrade() { // cheapest layer that can go higher
+        Layer best = null;
+        for (Layer l: this.layers) {
+            if (l.tier < l.highest && (best == null || l.average < best.average)) best = l;
+        }
+        if (best != null) this.change(best, best.tier + 1);
+    }
+
+    private void change(Layer layer, int tier) {
+        layer.tier = tier;
+        this.over = 0;
+        this.under = 0;
+        this.wait = this.cooldown;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// SETTERS
+
+    /**
+     * Sets the frame rate to hold.
+     *
+     * @param fps the frame rate to hold
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public void setTargetFps(double fps) {
+        if (!(fps > 0)) throw new IllegalArgumentException("Target fps must be positive, you have: " + fps);
+        this.budget = Math.round(1e9/fps);
+    }
+
+    /**
+     * Sets how long frames must be for tiers to change.
+     * A tier is lowered when the average frame costs more than {@code lower} times the budget, and raised when it costs less than {@code raise} times the budget.
+     *
+     * @param lower       fraction of the budget above which a tier is lowered
+     * @param lowerFrames frames in a row over that before lowering
+     * @param raise       fraction of the budget below which a tier is raised
+     * @param raiseFrames frames in a row under that before raising
+     *
+     * @throws IllegalArgumentException if {@code raise >= lower}, or either frame count is less than 1
+     */
+
+    public void setThresholds(double lower, int lowerFrames, double raise, int raiseFrames) {
+        if (!(raise < lower)) throw new IllegalArgumentException("Raise threshold must be below the lower threshold, you have: " + raise + " and " + lower);
+        if (lowerFrames < 1 || raiseFrames < 1)
+            throw new IllegalArgumentException("Frame counts must be at least 1, you have: " + lowerFrames + " and " + raiseFrames);
+        this.lower = lower;
+        this.raise = raise;
+        this.lowerFrames = lowerFrames;
+        this.raiseFrames = raiseFrames;
+    }
+
+    /**
+     * Sets how many frames tiers are left alone for after one changes.
+     *
+     * @param frames the number of frames to wait
+     */
+
+    public void setCooldown(int frames) {
+        this.cooldown = Math.max(0, frames);
+    }
+
+    /**
+     * Sets the tier of a layer.
+     * The governor continues to change it from there.
+     *
+     * @param layer the layer number
+     * @param tier  the tier to draw the layer at
+     */
+
+    public void setTier(int layer, int tier) {
+        QualityGovernor.checkTier(tier);
+        this.layers.get(layer).tier = tier;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// GETTERS
+
+    /**
+     * Returns the tier a layer is drawn at.
+     *
+     * @param layer the layer number
+     *
+     * @return TIER_LOW, TIER_MEDIUM or TIER_HIGH
+     */
+
+    public int getTier(int layer) {
+        return this.layers.get(layer).tier;
+    }
+
+    /**
+     * Returns the tiers of all layers, in the order they were added.
+     *
+     * @return the tier of every layer
+     */
+
+    public int[] getTiers() {
+        final int[] r = new int[this.layers.size()];
+        for (int i = 0; i < r.length; i++) r[i] = this.layers.get(i).tier;
+        return r;
+    }
+
+    /**
+     * Returns the rendering hints a layer is drawn with.
+     *
+     * @param layer the layer number
+     *
+     * @return the rendering hints of the layer's tier
+     */
+
+    public RenderingHints getHints(int layer) {
+        return QualityGovernor.HINTS[this.layers.get(layer).tier];
+    }
+
+    /**
+     * Returns the smoothed time a layer takes to draw.
+     *
+     * @param layer the layer number
+     *
+     * @return the average cost of the layer in nanoseconds
+     */
+
+    public double getLayerTime(int layer) {
+        return this.layers.get(layer).average;
+    }
+
+    /**
+     * Returns the smoothed cost of a frame, which tiers are chosen by.
+     *
+     * @return the average frame cost in nanoseconds
+     */
+
+    public double getFrameTime() {
+        return this.average;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder("QualityGovernor[");
+        for (int i = 0; i < this.layers.size(); i++) {
+            final Layer l = this.layers.get(i);
+            if (i > 0) b.append(", ");
+            b.append(l.name).append('=').append(new String[]{"LOW", "MEDIUM", "HIGH"}[l.tier])
+                .append(String.format(" %.2f ms", l.average/1e6));
+        }
+        return b.append(']').toString();
+    }
+
+    private static class Layer {
+        final String name;
+        final int    highest; // tier the layer may not go above
+        int          tier;
+        long         start;   // when drawing began, 0 if not drawing
+        long         time;    // nanoseconds spent this frame
+        double       average; // smoothed nanoseconds per frame
+
+        Layer(String name, int highest) {
+            this.name = name;
+            this.highest = highest;
+            this.tier = highest;
+        }
+    }
+}
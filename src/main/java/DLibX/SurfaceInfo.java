@@ -0,0 +1,114 @@
+package DLibX;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.image.VolatileImage;
+
+/**
+ * Describes whether images are held in video memory, and how much they use.
+ * <p>
+ * Accelerated images are drawn by the graphics card.
+ * An image that could not be accelerated, or was moved back to normal memory by Java, is drawn by the processor instead, which can be many times slower.
+ * The number of software draws counts how often such an image was used.
+ * A description may cover one image, or add up many.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ *
+ * @see DCanvas#getSurfaceInfo()
+ * @see ImageLoader#getSurfaceInfo(Object)
+ * @see SurfaceMetrics#getTotals()
+ */
+
+public final class SurfaceInfo {
+    private final String name;
+    private final int    images;
+    private final int    accelerated;
+    private final long   bytes;
+    private final long   software;
+
+    SurfaceInfo(String name, int images, int accelerated, long bytes, long software) {
+        this.name = name;
+        this.images = images;
+        this.accelerated = accelerated;
+        this.bytes = bytes;
+        this.software = software;
+    }
+
+    static SurfaceInfo of(String name, VolatileImage image, GraphicsConfiguration config, long software) { // one image
+        if (!DCanvas.isAccelerated(image, config)) return new SurfaceInfo(name, 1, 0, 0, software);
+        final int pixel = (config.getColorModel(image.getTransparency()).getPixelSize() + 7)/8;
+        return new SurfaceInfo(name, 1, 1, (long)image.getWidth()*image.getHeight()*pixel, software);
+    }
+
+    SurfaceInfo add(String name, SurfaceInfo other) {
+        return new SurfaceInfo(name, this.images + other.images, this.accelerated + other.accelerated,
+            this.bytes + other.bytes, this.software + other.software);
+    }
+
+    /**
+     * Returns what is described.
+     *
+     * @return the name of the image, or of the group of images
+     */
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of images described.
+     * Tile maps and animations hold one image per tile and frame.
+     *
+     * @return the number of images
+     */
+
+    public int getImages() {
+        return this.images;
+    }
+
+    /**
+     * Returns the number of images held in video memory.
+     *
+     * @return the number of accelerated images
+     */
+
+    public int getAcceleratedImages() {
+        return this.accelerated;
+    }
+
+    /**
+     * Returns whether every image described is held in video memory.
+     *
+     * @return true if all images are accelerated
+     */
+
+    public boolean isAccelerated() {
+        return this.accelerated == this.images;
+    }
+
+    /**
+     * Returns an estimate of the video memory used, from the size and pixel format of the accelerated images.
+     *
+     * @return the estimated video memory in bytes
+     */
+
+    public long getVideoMemory() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns how often images were used while not accelerated.
+     *
+     * @return the number of software draws
+     */
+
+    public long getSoftwareDraws() {
+        return this.software;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%d/%d accelerated, %.1f MB, %d software draws]",
+            this.name, this.accelerated, this.images, this.bytes/1048576.0, this.software);
+    }
+}
@@ -0,0 +1,180 @@
+package DLibX;
+
+import java.util.ArrayList;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often accelerated images lost their contents, and how long restoring them took, and adds up how many images are accelerated.
+ * <p>
+ * Accelerated images live in video memory, which may be taken back when the display mode changes, when switching to or from fullscreen, or when the graphics driver resets.
+ * Images loaded by an {@link ImageLoader} are restored from a copy kept in memory the next time they are used.
+ * Canvases cannot be restored, so they are cleared, and the {@link DConsole} skips the frame that was lost and asks for another.
+ * <p>
+ * Every DCanvas and ImageLoader is tracked until it is garbage collected, so {@link #getTotals()} can describe all images in the program.
+ * Images that silently stopped being accelerated show up there, and can be found with {@link DCanvas#getSurfaceInfo()} and {@link ImageLoader#getSurfaceInfo(Object)}.
+ * <p>
+ * The counts are shared by every image in the program, and may be read from any thread.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public final class SurfaceMetrics {
+    private static final AtomicLong restores    = new AtomicLong(); // contents redrawn into the same image
+    private static final AtomicLong recreations = new AtomicLong(); // image remade for a new display
+    private static final AtomicLong restoreTime = new AtomicLong(); // nanoseconds spent on both
+    private static final AtomicLong maxTime     = new AtomicLong();
+    private static final AtomicLong lostFrames  = new AtomicLong(); // frames not shown because the canvas was lost
+
+    private static final WeakHashMap<Object, Boolean> surfaces = new WeakHashMap<>(); // canvases and image loaders
+    private static Timer                              logger;
+
+    private SurfaceMetrics() {}
+
+    static void record(boolean recreated, long nanos) { // one image restored
+        (recreated? SurfaceMetrics.recreations: SurfaceMetrics.restores).incrementAndGet();
+        SurfaceMetrics.restoreTime.addAndGet(nanos);
+        SurfaceMetrics.maxTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    static void recordLostFrame() {
+        SurfaceMetrics.lostFrames.incrementAndGet();
+    }
+
+    static void register(Object surface) { // DCanvas or ImageLoader
+        synchronized (SurfaceMetrics.surfaces) {
+            SurfaceMetrics.surfaces.put(surface, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Describes every canvas and loaded image in the program added together.
+     *
+     * @return whether the images are accelerated, how much video memory they use and how often they were drawn in software
+     */
+
+    public static SurfaceInfo getTotals() {
+        final ArrayList<Object> list;
+        synchronized (SurfaceMetrics.surfaces) { // copied, so no canvas is locked while holding this
+            list = new ArrayList<>(SurfaceMetrics.surfaces.keySet());
+        }
+
+        SurfaceInfo info = new SurfaceInfo("Surfaces", 0, 0, 0, 0);
+        for (Object o: list) {
+            if (o instanceof DCanvas) info = info.add("Surfaces", ((DCanvas)o).getSurfaceInfo());
+            else if (o instanceof ImageLoader) info = info.add("Surfaces", ((ImageLoader)o).getSurfaceInfo());
+        }
+        return info;
+    }
+
+    /**
+     * Returns the number of images whose contents were lost and redrawn.
+     *
+     * @return the number of restored images
+     */
+
+    public static long getRestores() {
+        return SurfaceMetrics.restores.get();
+    }
+
+    /**
+     * Returns the number of images that had to be remade, because they no longer suited the display.
+     *
+     * @return the number of remade images
+     */
+
+    public static long getRecreations() {
+        return SurfaceMetrics.recreations.get();
+    }
+
+    /**
+     * Returns the total time spent restoring and remaking images.
+     *
+     * @return the time spent in nanoseconds
+     */
+
+    public static long getRestoreTime() {
+        return SurfaceMetrics.restoreTime.get();
+    }
+
+    /**
+     * Returns the longest time restoring or remaking one image took.
+     *
+     * @return the longest time in nanoseconds
+     */
+
+    public static long getMaxRestoreTime() {
+        return SurfaceMetrics.maxTime.get();
+    }
+
+    /**
+     * Returns the number of frames that were not shown because the canvas lost its contents.
+     *
+     * @return the number of lost frames
+     */
+
+    public static long getLostFrames() {
+        return SurfaceMetrics.lostFrames.get();
+    }
+
+    /**
+     * Sets all counts back to zero.
+     */
+
+    public static void reset() {
+        SurfaceMetrics.restores.set(0);
+        SurfaceMetrics.recreations.set(0);
+        SurfaceMetrics.restoreTime.set(0);
+        SurfaceMetrics.maxTime.set(0);
+        SurfaceMetrics.lostFrames.set(0);
+    }
+
+    /**
+     * Returns the totals and counts as text, for debugging.
+     *
+     * @return the totals and counts
+     */
+
+    public static String describe() {
+        final SurfaceInfo t = SurfaceMetrics.getTotals();
+        return String.format("SurfaceMetrics[%d/%d accelerated, %.1f MB, %d software draws, %d restored, %d remade, %.2f ms total, %.2f ms max, %d frames lost]",
+            t.getAcceleratedImages(), t.getImages(), t.getVideoMemory()/1048576.0, t.getSoftwareDraws(),
+            SurfaceMetrics.getRestores(), SurfaceMetrics.getRecreations(),
+            SurfaceMetrics.getRestoreTime()/1e6, SurfaceMetrics.getMaxRestoreTime()/1e6, SurfaceMetrics.getLostFrames());
+    }
+
+    /**
+     * Prints {@link #describe()} to standard output periodically, replacing any earlier logging.
+     *
+     * @param ms the time between lines in milliseconds
+     *
+     * @throws IllegalArgumentException if {@code ms < 1}
+     *
+     * @see #stopLogging()
+     */
+
+    public static synchronized void startLogging(long ms) {
+        if (ms < 1) throw new IllegalArgumentException("Logging period must be at least 1 ms, you have: " + ms);
+        SurfaceMetrics.stopLogging();
+        SurfaceMetrics.logger = new Timer("SurfaceMetrics", true);
+        SurfaceMetrics.logger.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                System.out.println(SurfaceMetrics.describe());
+            }
+        }, ms, ms);
+    }
+
+    /**
+     * Stops printing started by {@link #startLogging(long)}.
+     */
+
+    public static synchronized void stopLogging() {
+        if (SurfaceMetrics.logger == null) return;
+        SurfaceMetrics.logger.cancel();
+        SurfaceMetrics.logger = null;
+    }
+}
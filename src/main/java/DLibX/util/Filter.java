@@ -0,0 +1,491 @@
+package DLibX.util;
+
+import java.util.stream.IntStream;
+
+/**
+ * Processes a raster of packed ARGB pixels.
+ * <p>
+ * Filters read every pixel from a source raster and write the complete result to a separate destination raster.
+ * Rasters are plain <code>int[]</code> arrays stored row by row, so filters can be chained without touching the Java2D pipeline.
+ * Work is split into bands of rows (or columns) that are processed concurrently on all available cores.
+ * <p>
+ * Filter instances keep scratch buffers between calls, so a single instance must not be applied from multiple threads at once.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public abstract class Filter {
+    private static final int THREADS  = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_BAND = 16; // fewer rows than this per band is not worth a thread
+
+    /**
+     * Filters the source raster into the destination raster.
+     * The source and destination rasters are never the same array.
+     *
+     * @param src    the pixels to read from
+     * @param dst    the pixels to write to
+     * @param width  the width of both rasters in pixels
+     * @param height the height of both rasters in pixels
+     */
+
+    public abstract void apply(int[] src, int[] dst, int width, int height);
+
+    /**
+     * Runs a task over the range <code>[0, length)</code>, split into bands that are processed concurrently.
+     * Returns once every band has been processed.
+     *
+     * @param length the length of the range to process
+     * @param band   the task run on every band
+     */
+
+    protected static void parallel(int length, Band band) {
+        final int n = Math.max(1, Math.min(THREADS, length/MIN_BAND));
+        if (n == 1) {
+            band.run(0, length);
+            return;
+        }
+        IntStream.range(0, n).parallel().forEach(i -> band.run(i*length/n, (i+1)*length/n));
+    }
+
+    /**
+     * A task that processes a band of a raster.
+     */
+
+    protected interface Band {
+        /**
+         * Processes a band.
+         *
+         * @param start the first row or column of the band, inclusive
+         * @param end   the last row or column of the band, exclusive
+         */
+
+        void run(int start, int end);
+    }
+
+    protected static int[] ensure(int[] buffer, int length) { // grow scratch buffer only when needed
+        return (buffer == null || buffer.length < length)? new int[length]: buffer;
+    }
+
+    protected static int scale(int p, int m) { // multiplies rgb by m/256 for m up to 256, keeps alpha
+        return (p & 0xFF000000)
+            | ((((p & 0x00FF00FF) * m) >>> 8) & 0x00FF00FF)
+            | ((((p & 0x0000FF00) * m) >>> 8) & 0x0000FF00);
+    }
+
+    protected static int boost(int p, int m) { // multiplies rgb by m/256 for any m, channels saturate at 0xFF, keeps alpha
+        final int r = Math.min(0xFF, (((p >>> 16) & 0xFF)*m) >>> 8);
+        final int g = Math.min(0xFF, (((p >>> 8) & 0xFF)*m) >>> 8);
+        final int b = Math.min(0xFF, ((p & 0xFF)*m) >>> 8);
+        return (p & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+
+    protected static int add(int p, int q) { // saturating per channel add, branch-free
+        int rb = (p & 0x00FF00FF) + (q & 0x00FF00FF);
+        int ag = ((p >>> 8) & 0x00FF00FF) + ((q >>> 8) & 0x00FF00FF);
+        rb |= 0x01000100 - ((rb >>> 8) & 0x00010001); // any channel that overflowed becomes 0xFF
+        ag |= 0x01000100 - ((ag >>> 8) & 0x00010001);
+        return (rb & 0x00FF00FF) | ((ag & 0x00FF00FF) << 8);
+    }
+
+    //////////////////////////////////////////////////////////////////////////// BLURS
+
+    /**
+     * Blurs with a square kernel of equal weights.
+     * Cost is independent of the radius, as the kernel is applied as two running sums.
+     */
+
+    public static class BoxBlur extends Filter {
+        private final int radius;
+        private int[]     tmp;
+
+        /**
+         * Makes a box blur.
+         *
+         * @param radius the number of pixels on each side of the centre that are averaged
+         *
+         * @throws IllegalArgumentException if {@code radius < 1}
+         */
+
+        public BoxBlur(int radius) {
+            if (radius < 1) throw new IllegalArgumentException("Radius must be at least 1, you have: " + radius);
+            this.radius = radius;
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height) {
+            final int[] t = this.tmp = ensure(this.tmp, width*height);
+            parallel(height, (a, b) -> box(src, t, width, height, this.radius, a, b)); // rows into columns
+            parallel(width,  (a, b) -> box(t, dst, height, width, this.radius, a, b)); // and back again
+        }
+
+        /**
+         * Returns the blur radius.
+         *
+         * @return the blur radius in pixels
+         */
+
+        public int getRadius() {
+            return this.radius;
+        }
+    }
+
+    /**
+     * Blurs with a gaussian kernel.
+     * The kernel is separable, so it is applied once horizontally and once vertically.
+     */
+
+    public static class GaussianBlur extends Filter {
+        private final int   radius;
+        private final int[] kernel; // fixed point weights summing to 1 << 14
+        private int[]       tmp;
+
+        /**
+         * Makes a gaussian blur with a standard deviation of a third of the radius.
+         *
+         * @param radius the number of pixels on each side of the centre that are sampled
+         *
+         * @throws IllegalArgumentException if {@code radius < 1}
+         */
+
+        public GaussianBlur(int radius) {
+            this(radius, radius/3.0);
+        }
+
+        /**
+         * Makes a gaussian blur.
+         *
+         * @param radius the number of pixels on each side of the centre that are sampled
+         * @param sigma  the standard deviation of the gaussian function
+         *
+         * @throws IllegalArgumentException if {@code radius < 1} or {@code sigma <= 0}
+         */
+
+        public GaussianBlur(int radius, double sigma) {
+            if (radius < 1) throw new IllegalArgumentException("Radius must be at least 1, you have: " + radius);
+            if (sigma <= 0) throw new IllegalArgumentException("Sigma must be greater than 0, you have: " + sigma);
+            this.radius = radius;
+            this.kernel = kernel(radius, sigma);
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height) {
+            final int[] t = this.tmp = ensure(this.tmp, width*height);
+            parallel(height, (a, b) -> convolve(src, t, width, height, this.kernel, a, b)); // rows into columns
+            parallel(width,  (a, b) -> convolve(t, dst, height, width, this.kernel, a, b)); // and back again
+        }
+
+        /**
+         * Returns the blur radius.
+         *
+         * @return the blur radius in pixels
+         */
+
+        public int getRadius() {
+            return this.radius;
+        }
+
+        private static int[] kernel(int radius, double sigma) {
+            final double[] d = new double[2*radius + 1];
+            double sum = 0;
+            for (int i = 0; i < d.length; i++) {
+                final double x = i - radius;
+                sum += d[i] = Math.exp(-x*x/(2*sigma*sigma));
+            }
+            final int[] k = new int[d.length];
+            int total = 0;
+            for (int i = 0; i < k.length; i++) total += k[i] = (int)Math.round(d[i]/sum*(1 << 14));
+            k[radius] += (1 << 14) - total; // rounding error goes to the centre so brightness is kept
+            return k;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////// EFFECTS
+
+    /**
+     * Makes bright parts of the image glow.
+     * Pixels brighter than the threshold are blurred and added back on top of the image.
+     */
+
+    public static class Bloom extends Filter {
+        private final int          threshold;
+        private final int          intensity; // fixed point, 256 is 1.0
+        private final GaussianBlur blur;
+        private int[]              bright;
+        private int[]              glow;
+
+        /**
+         * Makes a bloom effect.
+         *
+         * @param threshold the luminance [0-255] a pixel must exceed to glow
+         * @param radius    the radius of the glow in pixels
+         * @param intensity how strongly the glow is added [0-4]
+         *
+         * @throws IllegalArgumentException if {@code radius < 1}
+         */
+
+        public Bloom(int threshold, int radius, double intensity) {
+            this.threshold = Math.max(0, Math.min(255, threshold));
+            this.intensity = (int)(Math.max(0, Math.min(4, intensity))*256);
+            this.blur = new GaussianBlur(radius);
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height) {
+            final int n = width*height;
+            final int[] l = this.bright = ensure(this.bright, n);
+            final int[] g = this.glow = ensure(this.glow, n);
+            final int t = this.threshold;
+            final int m = this.intensity;
+
+            parallel(height, (a, b) -> {
+                for (int i = a*width, e = b*width; i < e; i++) {
+                    final int p = src[i];
+                    final int y = (((p >> 16) & 0xFF)*77 + ((p >> 8) & 0xFF)*150 + (p & 0xFF)*29) >>> 8;
+                    l[i] = p & ((t - y) >> 31); // keeps pixel only if brighter than threshold
+                }
+            });
+
+            this.blur.apply(l, g, width, height);
+
+            parallel(height, (a, b) -> {
+                for (int i = a*width, e = b*width; i < e; i++) {
+                    final int p = src[i];
+                    dst[i] = (p & 0xFF000000) | (add(p, boost(g[i], m)) & 0x00FFFFFF); // intensity may pass 1
+                }
+            });
+        }
+    }
+
+    /**
+     * Remaps every colour channel through a lookup table.
+     * Lookup tables can express any per-channel curve, such as contrast, gamma, tinting or inversion.
+     */
+
+    public static class ColorGrade extends Filter {
+        private final int[] red;   // pre-shifted into position, so a pixel is just three lookups
+        private final int[] green;
+        private final int[] blue;
+
+        /**
+         * Makes a colour grade that applies the same curve to all channels.
+         *
+         * @param lut 256 output values [0-255], indexed by input value
+         *
+         * @throws IllegalArgumentException if {@code lut.length != 256}
+         */
+
+        public ColorGrade(int[] lut) {
+            this(lut, lut, lut);
+        }
+
+        /**
+         * Makes a colour grade with a curve for every channel.
+         *
+         * @param red   256 output red values [0-255], indexed by input red value
+         * @param green 256 output green values [0-255], indexed by input green value
+         * @param blue  256 output blue values [0-255], indexed by input blue value
+         *
+         * @throws IllegalArgumentException if any table is not 256 entries long
+         */
+
+        public ColorGrade(int[] red, int[] green, int[] blue) {
+            this.red = table(red, 16);
+            this.green = table(green, 8);
+            this.blue = table(blue, 0);
+        }
+
+        /**
+         * Makes a colour grade from a function.
+         *
+         * @param curve maps an input channel value [0-1] to an output channel value [0-1]
+         *
+         * @return the colour grade
+         */
+
+        public static ColorGrade of(java.util.function.DoubleUnaryOperator curve) {
+            final int[] lut = new int[256];
+            for (int i = 0; i < lut.length; i++)
+                lut[i] = (int)Math.round(Math.max(0, Math.min(1, curve.applyAsDouble(i/255.0)))*255);
+            return new ColorGrade(lut);
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height) {
+            final int[] r = this.red;
+            final int[] g = this.green;
+            final int[] b = this.blue;
+            parallel(height, (s, e) -> {
+                for (int i = s*width, end = e*width; i < end; i++) {
+                    final int p = src[i];
+                    dst[i] = (p & 0xFF000000) | r[(p >> 16) & 0xFF] | g[(p >> 8) & 0xFF] | b[p & 0xFF];
+                }
+            });
+        }
+
+        private static int[] table(int[] lut, int shift) {
+            if (lut.length != 256) throw new IllegalArgumentException("Lookup table must have 256 entries, you have: " + lut.length);
+            final int[] t = new int[256];
+            for (int i = 0; i < t.length; i++) t[i] = Math.max(0, Math.min(255, lut[i])) << shift;
+            return t;
+        }
+    }
+
+    /**
+     * Darkens the image towards its edges.
+     */
+
+    public static class Vignette extends Filter {
+        private final double strength;
+        private final double radius;
+        private short[]      factors; // per pixel multiplier, 256 is 1.0
+        private int          width;
+        private int          height;
+
+        /**
+         * Makes a vignette.
+         *
+         * @param strength how dark the corners become [0-1]
+         * @param radius   the distance from the centre [0-1] at which darkening starts, where 1 is the corner
+         */
+
+        public Vignette(double strength, double radius) {
+            this.strength = Math.max(0, Math.min(1, strength));
+            this.radius = Math.max(0, Math.min(1, radius));
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height) {
+            if (this.factors == null || this.width != width || this.height != height) this.build(width, height);
+            final short[] f = this.factors;
+            parallel(height, (a, b) -> {
+                for (int i = a*width, e = b*width; i < e; i++) dst[i] = scale(src[i], f[i]);
+            });
+        }
+
+        private void build(int width, int height) { // only rebuilt when the raster size changes
+            final short[] f = new short[width*height];
+            final double cx = width/2.0;
+            final double cy = height/2.0;
+            final double max = Math.sqrt(cx*cx + cy*cy);
+            parallel(height, (a, b) -> {
+                for (int y = a; y < b; y++) {
+                    final double dy = (y + 0.5 - cy)/max;
+                    for (int x = 0; x < width; x++) {
+                        final double dx = (x + 0.5 - cx)/max;
+                        double t = (Math.sqrt(dx*dx + dy*dy) - this.radius)/Math.max(1e-6, 1 - this.radius);
+                        t = Math.max(0, Math.min(1, t));
+                        t = t*t*(3 - 2*t); // smoothstep
+                        f[y*width + x] = (short)Math.round((1 - this.strength*t)*256);
+                    }
+                }
+            });
+            this.factors = f;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Darkens regularly spaced rows to imitate a CRT display.
+     */
+
+    public static class Scanlines extends Filter {
+        private final int spacing;
+        private final int factor; // 256 is 1.0
+
+        /**
+         * Makes a scanline effect.
+         *
+         * @param spacing   the number of rows from one darkened row to the next
+         * @param intensity how dark the darkened rows become [0-1]
+         *
+         * @throws IllegalArgumentException if {@code spacing < 2}
+         */
+
+        public Scanlines(int spacing, double intensity) {
+            if (spacing < 2) throw new IllegalArgumentException("Spacing must be at least 2, you have: " + spacing);
+            this.spacing = spacing;
+            this.factor = (int)Math.round((1 - Math.max(0, Math.min(1, intensity)))*256);
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height) {
+            final int m = this.factor;
+            parallel(height, (a, b) -> {
+                for (int y = a; y < b; y++) {
+                    final int row = y*width;
+                    if (y % this.spacing != 0) {
+                        System.arraycopy(src, row, dst, row, width);
+                    } else {
+                        for (int i = row, e = row + width; i < e; i++) dst[i] = scale(src[i], m);
+                    }
+                }
+            });
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////// KERNELS
+
+    // both passes read a row of src and write it as a column of dst (dst is height x width),
+    // so the second pass is the same code run on the transposed result
+
+    private static void box(int[] src, int[] dst, int width, int height, int r, int start, int end) {
+        final int mul = 65536/(2*r + 1); // floor, so the average can never round above 255
+        final int last = width - 1;
+        for (int y = start; y < end; y++) {
+            final int row = y*width;
+            int sa = 0, sr = 0, sg = 0, sb = 0;
+            for (int i = -r; i <= r; i++) {
+                final int p = src[row + Math.max(0, Math.min(last, i))];
+                sa += p >>> 24;
+                sr += (p >> 16) & 0xFF;
+                sg += (p >> 8) & 0xFF;
+                sb += p & 0xFF;
+            }
+            for (int x = 0, o = y; x < width; x++, o += height) {
+                dst[o] = (((sa*mul + 0x8000) >>> 16) << 24)
+                    | (((sr*mul + 0x8000) >>> 16) << 16)
+                    | (((sg*mul + 0x8000) >>> 16) << 8)
+                    | ((sb*mul + 0x8000) >>> 16);
+                final int out = src[row + Math.max(0, x - r)];
+                final int in = src[row + Math.min(last, x + r + 1)];
+                sa += (in >>> 24) - (out >>> 24);
+                sr += ((in >> 16) & 0xFF) - ((out >> 16) & 0xFF);
+                sg += ((in >> 8) & 0xFF) - ((out >> 8) & 0xFF);
+                sb += (in & 0xFF) - (out & 0xFF);
+            }
+        }
+    }
+
+    private static void convolve(int[] src, int[] dst, int width, int height, int[] k, int start, int end) {
+        final int r = k.length/2;
+        final int last = width - 1;
+        for (int y = start; y < end; y++) {
+            final int row = y*width;
+            for (int x = 0, o = y; x < width; x++, o += height) {
+                int sa = 0x2000, sr = 0x2000, sg = 0x2000, sb = 0x2000; // rounding
+                if (x >= r && x < width - r) { // interior, no clamping needed
+                    for (int i = 0, j = row + x - r; i < k.length; i++, j++) {
+                        final int p = src[j];
+                        final int w = k[i];
+                        sa += (p >>> 24)*w;
+                        sr += ((p >> 16) & 0xFF)*w;
+                        sg += ((p >> 8) & 0xFF)*w;
+                        sb += (p & 0xFF)*w;
+                    }
+                } else {
+                    for (int i = 0; i < k.length; i++) {
+                        final int p = src[row + Math.max(0, Math.min(last, x + i - r))];
+                        final int w = k[i];
+                        sa += (p >>> 24)*w;
+                        sr += ((p >> 16) & 0xFF)*w;
+                        sg += ((p >> 8) & 0xFF)*w;
+                        sb += (p & 0xFF)*w;
+                    }
+                }
+                dst[o] = ((sa >>> 14) << 24) | ((sr >>> 14) << 16) | ((sg >>> 14) << 8) | (sb >>> 14);
+            }
+        }
+    }
+}
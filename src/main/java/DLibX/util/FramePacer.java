@@ -0,0 +1,271 @@
+package DLibX.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a loop to an exact frame period.
+ * <p>
+ * Sleeping threads wake up late by an amount that depends on the operating system, often a millisecond or more, which makes frames arrive unevenly at high refresh rates.
+ * The pacer sleeps for most of the wait, and busy-waits only for the last part of it.
+ * How late sleeps wake up is measured while running, so the busy-wait is kept as short as the system allows.
+ * <p>
+ * Frame deadlines follow each other exactly one period apart, so small errors do not add up over time.
+ * If a frame runs later than a whole period, the pacer starts over from the current time instead of rushing the following frames.
+ * How far each wake-up lands from its deadline is recorded, and can be read back as pacing error statistics.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public class FramePacer {
+    private static final FramePacer SHARED = new FramePacer(60); // calibration for sleep(long)
+
+    private static final long   MIN_MARGIN = 20_000L;    // busy-wait at least this long, in nanoseconds
+    private static final long   MAX_MARGIN = 4_000_000L; // and never longer than this
+    private static final double GAIN       = 0.125;      // weight of each new overshoot measurement
+
+    private volatile long   period;     // frame length in nanoseconds
+    private long            deadline;   // end of the current frame, 0 before the first frame
+
+    private volatile double overshoot;  // average nanoseconds a sleep wakes up late
+    private volatile double deviation;  // average distance of a sleep from that average
+
+    private long            frames;     // frames that were waited for
+    private long            missed;     // frames that ran past their deadline by a whole period
+    private double          errorSum;   // nanoseconds woken past the deadline, for statistics
+    private double          errorSquares;
+    private long            errorMax;
+
+    /**
+     * Makes a frame pacer.
+     *
+     * @param fps the number of frames per second to pace to
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public FramePacer(double fps) {
+        this.setTargetFps(fps);
+        this.overshoot = 1_000_000; // pessimistic until measured
+        this.deviation = 0;
+    }
+
+    /**
+     * Sets the number of frames per second to pace to.
+     *
+     * @param fps the number of frames per second
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public void setTargetFps(double fps) {
+        if (!(fps > 0)) throw new IllegalArgumentException("Target fps must be positive, you have: " + fps);
+        this.setPeriod(Math.round(1e9/fps));
+    }
+
+    /**
+     * Sets the length of a frame.
+     * The current frame is lengthened or shortened to match.
+     *
+     * @param nanos the length of a frame in nanoseconds
+     *
+     * @throws IllegalArgumentException if {@code nanos < 1}
+     */
+
+    public void setPeriod(long nanos) {
+        if (nanos < 1) throw new IllegalArgumentException("Frame period must be positive, you have: " + nanos);
+        if (this.deadline != 0) this.deadline += nanos - this.period;
+        this.period = nanos;
+    }
+
+    /**
+     * Returns the number of frames per second paced to.
+     *
+     * @return the number of frames per second
+     */
+
+    public double getTargetFps() {
+        return 1e9/this.period;
+    }
+
+    /**
+     * Returns the length of a frame.
+     *
+     * @return the length of a frame in nanoseconds
+     */
+
+    public long getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Waits until the current frame is over.
+     * The first call starts timing and returns immediately.
+     *
+     * @return how long was waited in nanoseconds
+     */
+
+    public long sync() {
+        final long now = System.nanoTime();
+
+        if (this.deadline == 0) { // first frame
+            this.deadline = now + this.period;
+            return 0;
+        }
+
+        if (now - this.deadline >= this.period) { // far behind, start over instead of catching up
+            this.missed++;
+            this.deadline = now + this.period;
+            return 0;
+        }
+
+        final long target = this.deadline;
+        this.deadline += this.period;
+        if (now >= target) return 0; // late, but within a frame
+
+        this.sleepUntil(target);
+        final long woke = System.nanoTime();
+
+        final long error = woke - target;
+        this.frames++;
+        this.errorSum += error;
+        this.errorSquares += (double)error*error;
+        this.errorMax = Math.max(this.errorMax, Math.abs(error));
+
+        return woke - now;
+    }
+
+    /**
+     * Restarts timing, and clears the error statistics.
+     * The calibration of how late sleeps wake up is kept.
+     */
+
+    public void reset() {
+        this.deadline = 0;
+        this.frames = 0;
+        this.missed = 0;
+        this.errorSum = 0;
+        this.errorSquares = 0;
+        this.errorMax = 0;
+    }
+
+    /**
+     * Waits until a point in time, as measured by {@link System#nanoTime()}.
+     * Returns early if the thread is interrupted, leaving its interrupt status set.
+     *
+     * @param deadline the time to wait until, in nanoseconds
+     */
+
+    public void sleepUntil(long deadline) {
+        while (true) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return;
+
+            final long margin = this.getMargin();
+            if (remaining <= margin) break;
+
+            final long request = remaining - margin;
+            final long before = System.nanoTime();
+            LockSupport.parkNanos(request);
+            if (Thread.currentThread().isInterrupted()) return;
+            this.calibrate(System.nanoTime() - before - request);
+        }
+
+        while (deadline - System.nanoTime() > 0) Thread.onSpinWait(); // the last bit is too short to sleep
+    }
+
+    /**
+     * Pauses the calling thread precisely, sharing one calibration between all callers.
+     * Returns early if the thread is interrupted, leaving its interrupt status set.
+     *
+     * @param nanos the length of time to pause in nanoseconds
+     */
+
+    public static void sleep(long nanos) {
+        if (nanos > 0) FramePacer.SHARED.sleepUntil(System.nanoTime() + nanos);
+    }
+
+    private long getMargin() { // how early to stop sleeping
+        final long m = (long)(this.overshoot + 2*this.deviation);
+        return Math.max(FramePacer.MIN_MARGIN, Math.min(FramePacer.MAX_MARGIN, m));
+    }
+
+    private void calibrate(long over) { // keeps running averages, like a round trip time estimator
+        if (over < 0) over = 0;
+        if (over > 2*FramePacer.MAX_MARGIN) return; // descheduled, not representative
+        final double o = this.overshoot;
+        this.deviation += (Math.abs(over - o) - this.deviation)*FramePacer.GAIN;
+        this.overshoot = o + (over - o)*FramePacer.GAIN;
+    }
+
+    //////////////////////////////////////////////////////////////////////////// STATISTICS
+
+    /**
+     * Returns how late a sleep is expected to wake up, as measured so far.
+     *
+     * @return the expected sleep overshoot in nanoseconds
+     */
+
+    public double getSleepOvershoot() {
+        return this.overshoot;
+    }
+
+    /**
+     * Returns the number of frames that were waited for since the last reset.
+     *
+     * @return the number of paced frames
+     */
+
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Returns the number of frames that ran longer than a whole period past their deadline since the last reset.
+     *
+     * @return the number of missed frames
+     */
+
+    public long getMissedFrames() {
+        return this.missed;
+    }
+
+    /**
+     * Returns how far past their deadlines frames were released on average.
+     *
+     * @return the mean pacing error in nanoseconds
+     */
+
+    public double getMeanError() {
+        return (this.frames == 0)? 0: this.errorSum/this.frames;
+    }
+
+    /**
+     * Returns the standard deviation of how far past their deadlines frames were released.
+     *
+     * @return the standard deviation of the pacing error in nanoseconds
+     */
+
+    public double getErrorDeviation() {
+        if (this.frames == 0) return 0;
+        final double mean = this.errorSum/this.frames;
+        return Math.sqrt(Math.max(0, this.errorSquares/this.frames - mean*mean));
+    }
+
+    /**
+     * Returns the largest distance of a frame release from its deadline.
+     *
+     * @return the largest pacing error in nanoseconds
+     */
+
+    public long getMaxError() {
+        return this.errorMax;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FramePacer[%.1f fps, %d frames, %d missed, error %.1f +/- %.1f us, max %.1f us, overshoot %.1f us]",
+            this.getTargetFps(), this.frames, this.missed,
+            this.getMeanError()/1e3, this.getErrorDeviation()/1e3, this.errorMax/1e3, this.overshoot/1e3);
+    }
+}
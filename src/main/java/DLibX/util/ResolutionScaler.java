@@ -0,0 +1,205 @@
+package DLibX.util;
+
+/**
+ * Chooses a render resolution that keeps frames within a time budget.
+ * <p>
+ * Frame times are averaged, and the render scale is lowered one step when frames take longer than the budget, or raised one step when there is plenty of time to spare.
+ * The thresholds for lowering and raising are far apart, each must hold for a number of frames in a row, and the scale is left alone for a while after every change.
+ * This keeps the resolution from flickering between two steps, while still reacting to load spikes within a few frames.
+ * <p>
+ * The scale is meant for {@link DLibX.DConsole#setRenderScale(double)}, which {@link DLibX.GameLoop} applies automatically.
+ * When frames are paced to a target rate, the time spent waiting must not be counted, so {@link #update(long)} should be given the time spent working only.
+ *
+ * @author  Marcus Minhorst
+ * @version 1.0
+ */
+
+public class ResolutionScaler {
+    private long   budget;      // target frame time in nanoseconds
+    private double min;         // lowest scale
+    private double max;         // highest scale
+    private double step;        // amount the scale changes by
+    private double lower;       // fraction of the budget above which the scale is lowered
+    private double raise;       // fraction of the budget below which the scale is raised
+    private int    lowerFrames; // frames in a row over budget before lowering
+    private int    raiseFrames; // frames in a row with headroom before raising
+    private int    cooldown;    // frames to wait after a change
+
+    private double scale;
+    private double average;     // smoothed frame time
+    private int    over;        // frames in a row over budget
+    private int    under;       // frames in a row with headroom
+    private int    wait;        // frames left before the scale may change again
+
+    /**
+     * Makes a resolution scaler that keeps frames within the time of a target frame rate.
+     * The scale changes in steps of 0.1 between 0.5 and 1.
+     *
+     * @param fps the frame rate to hold
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public ResolutionScaler(double fps) {
+        this(fps, 0.5, 1, 0.1);
+    }
+
+    /**
+     * Makes a resolution scaler that keeps frames within the time of a target frame rate.
+     *
+     * @param fps  the frame rate to hold
+     * @param min  the lowest scale
+     * @param max  the highest scale, at most 1
+     * @param step the amount the scale changes by at once
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}, or the scales are not {@code 0 < min <= max <= 1}, or the step is not positive
+     */
+
+    public ResolutionScaler(double fps, double min, double max, double step) {
+        if (!(0 < min && min <= max && max <= 1))
+            throw new IllegalArgumentException("Scales must be 0 < min <= max <= 1, you have: " + min + " to " + max);
+        if (!(step > 0)) throw new IllegalArgumentException("Step must be positive, you have: " + step);
+
+        this.setTargetFps(fps);
+        this.min = min;
+        this.max = max;
+        this.step = step;
+        this.lower = 1.0;
+        this.raise = 0.75;
+        this.lowerFrames = 8;
+        this.raiseFrames = 90;
+        this.cooldown = 30;
+        this.scale = max;
+        this.reset();
+    }
+
+    /**
+     * Sets the frame rate to hold.
+     *
+     * @param fps the frame rate to hold
+     *
+     * @throws IllegalArgumentException if {@code fps <= 0}
+     */
+
+    public void setTargetFps(double fps) {
+        if (!(fps > 0)) throw new IllegalArgumentException("Target fps must be positive, you have: " + fps);
+        this.budget = Math.round(1e9/fps);
+    }
+
+    /**
+     * Sets how long frames must be for the scale to change.
+     * The scale is lowered when the average frame takes longer than {@code lower} times the budget, and raised when it takes less than {@code raise} times the budget.
+     *
+     * @param lower       fraction of the budget above which the scale is lowered
+     * @param lowerFrames frames in a row over that before lowering
+     * @param raise       fraction of the budget below which the scale is raised
+     * @param raiseFrames frames in a row under that before raising
+     *
+     * @throws IllegalArgumentException if {@code raise >= lower}, or either frame count is less than 1
+     */
+
+    public void setThresholds(double lower, int lowerFrames, double raise, int raiseFrames) {
+        if (!(raise < lower)) throw new IllegalArgumentException("Raise threshold must be below the lower threshold, you have: " + raise + " and " + lower);
+        if (lowerFrames < 1 || raiseFrames < 1)
+            throw new IllegalArgumentException("Frame counts must be at least 1, you have: " + lowerFrames + " and " + raiseFrames);
+        this.lower = lower;
+        this.raise = raise;
+        this.lowerFrames = lowerFrames;
+        this.raiseFrames = raiseFrames;
+    }
+
+    /**
+     * Sets how many frames the scale is left alone for after it changes.
+     *
+     * @param frames the number of frames to wait
+     */
+
+    public void setCooldown(int frames) {
+        this.cooldown = Math.max(0, frames);
+    }
+
+    /**
+     * Measures the last frame from a frame rate counter, and returns the scale to draw the next frame at.
+     *
+     * @param fps a frame rate counter updated once per frame
+     *
+     * @return the render scale
+     */
+
+    public double update(Fps fps) {
+        return this.update(fps.getFrameDuration());
+    }
+
+    /**
+     * Measures a frame, and returns the scale to draw the next frame at.
+     *
+     * @param nanos the time the last frame took to draw, in nanoseconds
+     *
+     * @return the render scale
+     */
+
+    public double update(long nanos) {
+        if (nanos <= 0) return this.scale;
+
+        this.average = (this.average == 0)? nanos: this.average*0.8 + nanos*0.2;
+
+        if (this.average > this.budget*this.lower) {
+            this.over++;
+            this.under = 0;
+        } else if (this.average < this.budget*this.raise) {
+            this.under++;
+            this.over = 0;
+        } else {
+            this.over = 0;
+            this.under = 0;
+        }
+
+        if (this.wait > 0) {
+            this.wait--;
+        } else if (this.over >= this.lowerFrames && this.scale > this.min) {
+            this.change(Math.max(this.min, this.scale - this.step));
+        } else if (this.under >= this.raiseFrames && this.scale < this.max) {
+            this.change(Math.min(this.max, this.scale + this.step));
+        }
+
+        return this.scale;
+    }
+
+    private void change(double scale) {
+        this.scale = Math.round(scale*1000)/1000.0; // no drift from adding steps
+        this.over = 0;
+        this.under = 0;
+        this.wait = this.cooldown;
+    }
+
+    /**
+     * Forgets all measurements, keeping the current scale.
+     */
+
+    public void reset() {
+        this.average = 0;
+        this.over = 0;
+        this.under = 0;
+        this.wait = 0;
+    }
+
+    /**
+     * Returns the scale to draw at.
+     *
+     * @return the render scale
+     */
+
+    public double getScale() {
+        return this.scale;
+    }
+
+    /**
+     * Returns the smoothed frame time the scale is chosen by.
+     *
+     * @return the average frame time in nanoseconds
+     */
+
+    public double getAverageFrameTime() {
+        return this.average;
+    }
+}
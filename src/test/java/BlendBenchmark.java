@@ -0,0 +1,55 @@
+package Test;
+
+import DLibX.BlendMode;
+
+import java.util.Random;
+
+// Measures the throughput of every blend mode kernel on a 1080p sized raster.
+
+public class BlendBenchmark {
+    public static void main(String[] args) {
+        final int width = 1920;
+        final int height = 1080;
+        final int frames = (args.length > 0)? Integer.parseInt(args[0]): 100;
+
+        final int[] src = new int[width*height];
+        final int[] dst = new int[width*height];
+        final int[] dstReset = new int[width*height];
+
+        Random r = new Random(1105);
+        for (int i = 0; i < src.length; i++) {
+            src[i] = premultiply(r.nextInt());
+            dstReset[i] = premultiply(r.nextInt() | 0xFF000000);
+        }
+
+        for (BlendMode mode: BlendMode.values()) {
+            for (int i = 0; i < 20; i++) run(mode, src, dst, dstReset, width, height); // warm up
+
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            for (int i = 0; i < frames; i++) {
+                long time = run(mode, src, dst, dstReset, width, height);
+                best = Math.min(best, time);
+                total += time;
+            }
+
+            System.out.printf("%-9s avg %6.2f ms  best %6.2f ms  %8.1f Mpixel/s%n",
+                mode, total/1e6/frames, best/1e6, (double)width*height*frames/(total/1e3));
+        }
+    }
+
+    private static long run(BlendMode mode, int[] src, int[] dst, int[] dstReset, int width, int height) {
+        System.arraycopy(dstReset, 0, dst, 0, dst.length);
+        long time = System.nanoTime();
+        for (int y = 0; y < height; y++) mode.blend(src, y*width, dst, y*width, width);
+        return System.nanoTime() - time;
+    }
+
+    private static int premultiply(int p) {
+        int a = p >>> 24;
+        return (a << 24)
+            | ((((p >> 16) & 0xFF)*a/255) << 16)
+            | ((((p >> 8) & 0xFF)*a/255) << 8)
+            | ((p & 0xFF)*a/255);
+    }
+}
@@ -0,0 +1,52 @@
+package Test;
+
+import DLibX.DConsole;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+// Compares frame times of every DConsole present mode with an uncapped frame rate.
+// PRESENT_REPAINT coalesces repaints on the event thread, so its frames are not all shown; the time is what the drawing thread pays.
+
+public class PresentBenchmark {
+    public static void main(String[] args) {
+        final int frames = (args.length > 0)? Integer.parseInt(args[0]): 600;
+
+        DConsole dc = new DConsole("Present Benchmark", 1280, 720, true);
+        dc.setCloseOperation(DConsole.ON_CLOSE_DISPOSE);
+
+        int[] modes = {DConsole.PRESENT_REPAINT, DConsole.PRESENT_BLIT, DConsole.PRESENT_FLIP};
+        String[] names = {"REPAINT", "BLIT", "FLIP"};
+
+        for (int m = 0; m < modes.length; m++) {
+            dc.setPresentMode(modes[m]);
+            for (int i = 0; i < 60; i++) frame(dc, i); // warm up
+
+            long[] times = new long[frames];
+            for (int i = 0; i < frames; i++) {
+                long time = System.nanoTime();
+                frame(dc, i);
+                times[i] = System.nanoTime() - time;
+            }
+            Arrays.sort(times);
+
+            long total = 0;
+            for (long t: times) total += t;
+
+            System.out.printf("%-8s (using %-7s) avg %6.3f ms  median %6.3f ms  99th %6.3f ms%n",
+                names[m], names[dc.getPresentMode() - DConsole.PRESENT_REPAINT],
+                total/1e6/frames, times[frames/2]/1e6, times[frames*99/100]/1e6);
+        }
+
+        dc.dispose();
+    }
+
+    private static void frame(DConsole dc, int i) {
+        dc.clear();
+        dc.setPaint(Color.BLUE);
+        for (int j = 0; j < 100; j++) {
+            dc.fillRect((i*3 + j*37)%dc.getWidth(), (i*2 + j*53)%dc.getHeight(), 40, 40);
+        }
+        dc.redraw();
+    }
+}
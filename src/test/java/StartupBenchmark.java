@@ -0,0 +1,48 @@
+package Test;
+
+import DLibX.DConsole;
+
+import java.awt.Color;
+import java.awt.Toolkit;
+import java.util.Arrays;
+
+// Measures how long a DConsole takes to construct, and to show its first frame, for a number of windows opened one after another.
+// The first window pays for starting the graphics system and fonts, so it is reported separately.
+// Frames are blitted, so the first frame is on screen when redraw returns rather than waiting on the event thread.
+
+public class StartupBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        final int windows = (args.length > 0)? Integer.parseInt(args[0]): 10;
+
+        long[] construct = new long[windows];
+        long[] first = new long[windows];
+
+        for (int i = 0; i < windows; i++) {
+            final long start = System.nanoTime();
+            DConsole dc = new DConsole("Startup Benchmark", 640, 480, true);
+            construct[i] = System.nanoTime() - start;
+            dc.setPresentMode(DConsole.PRESENT_BLIT); // shown before redraw returns, a repaint would only be queued
+
+            while (dc.isHidden()) Thread.sleep(1); // redraw presents nothing until the window is on screen
+            dc.setPaint(Color.BLUE);
+            dc.fillRect(100, 100, 200, 200);
+            dc.redraw();
+            Toolkit.getDefaultToolkit().sync();
+            first[i] = System.nanoTime() - start;
+
+            dc.setCloseOperation(DConsole.ON_CLOSE_DISPOSE);
+            dc.dispose();
+        }
+
+        System.out.printf("cold   construct %7.2f ms  first frame %7.2f ms%n", construct[0]/1e6, first[0]/1e6);
+        if (windows > 1) {
+            long[] c = Arrays.copyOfRange(construct, 1, windows);
+            long[] f = Arrays.copyOfRange(first, 1, windows);
+            Arrays.sort(c);
+            Arrays.sort(f);
+            System.out.printf("warm   construct %7.2f ms  first frame %7.2f ms  (median of %d)%n", c[c.length/2]/1e6, f[f.length/2]/1e6, c.length);
+        }
+
+        System.exit(0);
+    }
+}